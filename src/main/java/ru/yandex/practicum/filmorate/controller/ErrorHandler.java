@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -62,6 +63,14 @@ public class ErrorHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errors);
     }
 
+    @ExceptionHandler(CannotGetJdbcConnectionException.class)
+    public ResponseEntity<Map<String, String>> handleNoConnection(CannotGetJdbcConnectionException ex) {
+        log.warn("Нет соединения с БД: {}", ex.getMessage());
+        Map<String, String> errorMap = new HashMap<>();
+        errorMap.put("error", "Сервис перегружен, повторите запрос позже");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorMap);
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<Map<String, String>> handleRuntimeException(RuntimeException ex) {
         log.error("RuntimeException: {}", ex.getMessage());
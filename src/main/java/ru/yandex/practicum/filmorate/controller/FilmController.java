@@ -1,19 +1,33 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.FilmImportResultDto;
+import ru.yandex.practicum.filmorate.dto.FilmSuggestionDto;
 import ru.yandex.practicum.filmorate.dto.NewFilmRequest;
 import ru.yandex.practicum.filmorate.dto.UpdateFilmRequest;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmImportService;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.VersionRegistry;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -27,14 +41,38 @@ import java.util.stream.Collectors;
 public class FilmController {
 
     private final FilmService filmService;
+    private final FilmImportService filmImportService;
+    private final ObjectMapper objectMapper;
+    private final VersionRegistry versions;
 
     @GetMapping
-    public Collection<FilmDto> getAll() {
-        return filmService.getAll();
+    public Collection<FilmDto> getAll(@RequestParam(required = false) @PositiveOrZero Long afterId,
+                                      @RequestParam(required = false) @Positive Integer limit) {
+        return filmService.getFilms(afterId, limit);
     }
 
+    // Весь каталог в формате NDJSON: фильмы пишутся в ответ по мере чтения из курсора
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll(@RequestParam(required = false) @PositiveOrZero Long afterId) {
+        StreamingResponseBody body = out -> filmService.streamFilms(afterId, film -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(film));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    // Условный GET: тег выдаётся и сверяется только для существующего фильма, при совпадении If-None-Match
+    // ответ 304 без чтения карточки
     @GetMapping("/{filmId}")
-    public FilmDto getFilm(@PathVariable("filmId") Long filmId) {
+    public FilmDto getFilm(@PathVariable("filmId") Long filmId, WebRequest request) {
+        filmService.checkFilmExists(filmId);
+        if (request.checkNotModified(versions.filmTag(filmId))) {
+            return null;
+        }
         return filmService.getFilm(filmId);
     }
 
@@ -43,6 +81,12 @@ public class FilmController {
         return filmService.create(film);
     }
 
+    // Пакетный импорт: тело в формате NDJSON или JSON-массив читается потоково, ответ — результат по каждой записи
+    @PostMapping(path = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public List<FilmImportResultDto> bulkCreate(InputStream body) {
+        return filmImportService.importFilms(body);
+    }
+
     @PutMapping
     public FilmDto update(@Valid @RequestBody(required = false) UpdateFilmRequest film) {
         if (film == null) {
@@ -69,7 +113,11 @@ public class FilmController {
     @GetMapping("/popular")
     public Collection<FilmDto> getPopularFilms(@RequestParam(name = "count", defaultValue = "10") Integer count,
                                                @RequestParam(required = false) @Positive Integer genreId,
-                                               @RequestParam(required = false) @Positive Integer year) {
+                                               @RequestParam(required = false) @Positive Integer year,
+                                               WebRequest request) {
+        if (request.checkNotModified(versions.popularTag())) {
+            return null;
+        }
         return filmService.getPopularFilms(count, genreId, year);
     }
 
@@ -96,6 +144,16 @@ public class FilmController {
         return filmService.searchFilms(query, searchBy);
     }
 
+    @GetMapping("/search/suggest")
+    public List<FilmSuggestionDto> suggest(@RequestParam String prefix,
+                                           @RequestParam(defaultValue = "10") @Positive Integer limit) {
+        if (FilmSuggestIndex.normalize(prefix).isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Параметр prefix должен содержать хотя бы одну букву или цифру");
+        }
+        return filmService.suggest(prefix, limit);
+    }
+
     @GetMapping("/director/{directorId}")
     public Collection<Film> getFilmsByDirector(@PathVariable Long directorId,
                                                @RequestParam(defaultValue = "likes") String sortBy) {
@@ -1,27 +1,37 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.dto.GenreDto;
 import ru.yandex.practicum.filmorate.service.GenreService;
-
-import java.util.List;
+import ru.yandex.practicum.filmorate.service.VersionRegistry;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/genres")
 public class GenreController {
     private final GenreService genreService;
+    private final VersionRegistry versions;
 
+    // Справочник меняется редко: при совпадении If-None-Match ответ 304 без тела
     @GetMapping
-    @ResponseStatus(HttpStatus.OK)
-    public List<GenreDto> getAll() {
-        return genreService.getAll();
+    public ResponseEntity<byte[]> getAll(WebRequest request) {
+        if (request.checkNotModified(versions.genresTag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(genreService.getAllJson());
     }
 
     @GetMapping("/{genreId}")
-    public GenreDto getGenre(@PathVariable("genreId") int genreId) {
+    public GenreDto getGenre(@PathVariable("genreId") int genreId, WebRequest request) {
+        if (request.checkNotModified(versions.genresTag())) {
+            return null;
+        }
         return genreService.getGenre(genreId);
     }
 }
\ No newline at end of file
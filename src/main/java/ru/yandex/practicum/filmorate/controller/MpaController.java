@@ -1,27 +1,37 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.dto.MpaDto;
 import ru.yandex.practicum.filmorate.service.MpaService;
-
-import java.util.List;
+import ru.yandex.practicum.filmorate.service.VersionRegistry;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/mpa")
 public class MpaController {
     private final MpaService mpaService;
+    private final VersionRegistry versions;
 
+    // Справочник меняется редко: при совпадении If-None-Match ответ 304 без тела
     @GetMapping
-    @ResponseStatus(HttpStatus.OK)
-    public List<MpaDto> getAll() {
-        return mpaService.getAll();
+    public ResponseEntity<byte[]> getAll(WebRequest request) {
+        if (request.checkNotModified(versions.mpaTag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(mpaService.getAllJson());
     }
 
     @GetMapping("/{mpaId}")
-    public MpaDto getMpa(@PathVariable("mpaId") int mpaId) {
+    public MpaDto getMpa(@PathVariable("mpaId") int mpaId, WebRequest request) {
+        if (request.checkNotModified(versions.mpaTag())) {
+            return null;
+        }
         return mpaService.getMpa(mpaId);
     }
 }
\ No newline at end of file
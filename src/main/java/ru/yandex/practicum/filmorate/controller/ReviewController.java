@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.annotation.Validated;
@@ -22,8 +23,10 @@ public class ReviewController {
 
     @GetMapping
     public Collection<ReviewDto> getReviews(@RequestParam(required = false) Long filmId,
-                                            @RequestParam(defaultValue = "10") int count) {
-        return reviewService.getReviews(filmId, count);
+                                            @RequestParam(defaultValue = "10") int count,
+                                            @RequestParam(required = false) Integer afterUseful,
+                                            @RequestParam(required = false) @PositiveOrZero Long afterId) {
+        return reviewService.getReviews(filmId, afterUseful, afterId, count);
     }
 
     @GetMapping(path = "/{id}")
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.yandex.practicum.filmorate.dal.StatementCounter;
+
+import java.io.IOException;
+
+/**
+ * Сбрасывает счётчик SQL-обращений в начале запроса и пишет итог в лог после него.
+ * Работает вместе с {@link ru.yandex.practicum.filmorate.dal.StatementCountingDataSourceConfig}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.sql.statement-counter.enabled", havingValue = "true")
+public class StatementCountFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        StatementCounter.reset();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            log.debug("{} {}: выполнено SQL-запросов {}.", request.getMethod(), request.getRequestURI(),
+                    StatementCounter.get());
+        }
+    }
+}
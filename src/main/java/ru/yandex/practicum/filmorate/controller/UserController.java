@@ -1,24 +1,26 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.dto.FeedDto;
 import ru.yandex.practicum.filmorate.dto.NewUserRequest;
 import ru.yandex.practicum.filmorate.dto.UpdateUserRequest;
 import ru.yandex.practicum.filmorate.dto.UserDto;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/users")
+@Validated
 public class UserController {
     private final UserService userService;
 
@@ -56,8 +58,10 @@ public class UserController {
     }
 
     @GetMapping("/{userId}/friends")
-    public List<Optional<User>> getFriends(@PathVariable("userId") Long userId) {
-        return userService.getFriends(userId);
+    public List<UserDto> getFriends(@PathVariable("userId") Long userId,
+                                    @RequestParam(required = false) @PositiveOrZero Long afterId,
+                                    @RequestParam(required = false) @Positive Integer limit) {
+        return userService.getFriends(userId, afterId, limit);
     }
 
     @DeleteMapping("/{userId}/friends/{friendId}")
@@ -66,8 +70,10 @@ public class UserController {
     }
 
     @GetMapping("/{userId}/friends/common/{otherId}")
-    public List<Optional<User>> getSameFriends(@PathVariable("userId") Long userId, @PathVariable("otherId") Long otherId) {
-        return userService.getSameFriends(userId, otherId);
+    public List<UserDto> getSameFriends(@PathVariable("userId") Long userId, @PathVariable("otherId") Long otherId,
+                                        @RequestParam(required = false) @PositiveOrZero Long afterId,
+                                        @RequestParam(required = false) @Positive Integer limit) {
+        return userService.getSameFriends(userId, otherId, afterId, limit);
     }
 
     @PutMapping("/{userId}/friends/{friendId}/confirm")
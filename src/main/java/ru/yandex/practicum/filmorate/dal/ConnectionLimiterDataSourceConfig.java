@@ -0,0 +1,141 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ограничитель числа одновременно выданных соединений для режима виртуальных потоков
+ * (spring.threads.virtual.enabled=true). Виртуальных потоков на запросы не меньше, чем самих запросов,
+ * и без ограничителя все они разом конкурируют за соединения пула. Здесь потоки ждут разрешения
+ * в честной очереди семафора, а не перебирают пул; не дождавшиеся за acquire-timeout-ms получают
+ * CannotGetJdbcConnectionException (ответ 503). Число разрешений по умолчанию равно размеру пула Hikari.
+ */
+@Slf4j
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class ConnectionLimiterDataSourceConfig implements BeanPostProcessor, SmartInitializingSingleton {
+    private final Semaphore permits;
+    private final int maxConnections;
+    private final long acquireTimeoutMs;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private Timer waitTimer;
+
+    public ConnectionLimiterDataSourceConfig(
+            @Value("${filmorate.jdbc.limiter.max-connections:${spring.datasource.hikari.maximum-pool-size:10}}")
+            int maxConnections,
+            @Value("${filmorate.jdbc.limiter.acquire-timeout-ms:5000}") long acquireTimeoutMs,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        this.maxConnections = Math.max(1, maxConnections);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.meterRegistry = meterRegistry;
+        this.permits = new Semaphore(this.maxConnections, true);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof LimitedDataSource)) {
+            log.info("Виртуальные потоки: не более {} соединений с БД одновременно.", maxConnections);
+            return new LimitedDataSource(dataSource);
+        }
+        return bean;
+    }
+
+    // Метрики регистрируются после создания всех бинов, чтобы не поднимать реестр раньше DataSource
+    @Override
+    public void afterSingletonsInstantiated() {
+        MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+        Gauge.builder("filmorate.jdbc.limiter.waiting", permits, Semaphore::getQueueLength)
+                .description("Потоки, ожидающие соединения с БД")
+                .register(registry);
+        Gauge.builder("filmorate.jdbc.limiter.active", permits, p -> maxConnections - p.availablePermits())
+                .description("Выданные соединения с БД")
+                .register(registry);
+        waitTimer = Timer.builder("filmorate.jdbc.limiter.wait")
+                .description("Время ожидания соединения с БД")
+                .register(registry);
+    }
+
+    private final class LimitedDataSource extends DelegatingDataSource {
+        private LimitedDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            acquire();
+            try {
+                return releasingConnection(super.getConnection());
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            acquire();
+            try {
+                return releasingConnection(super.getConnection(username, password));
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+    }
+
+    private void acquire() throws SQLException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Ожидание соединения с БД прервано", e);
+        }
+        if (waitTimer != null) {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            throw new SQLTransientConnectionException(
+                    "Нет свободного соединения с БД за " + acquireTimeoutMs + " мс, в очереди " + permits.getQueueLength());
+        }
+    }
+
+    // Соединение, которое при первом close() возвращает разрешение семафору
+    private Connection releasingConnection(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    } finally {
+                        if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    }
+                });
+    }
+}
@@ -5,6 +5,9 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.dal.mapper.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.index.AfterCommit;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.storage.DirectorStorage;
 
@@ -15,8 +18,12 @@ import java.util.*;
 @Repository
 @RequiredArgsConstructor
 public class DirectorDbStorage implements DirectorStorage {
+    private static final String FIND_BY_IDS = "SELECT id, name FROM directors WHERE id = ANY(?)";
+
     private final JdbcTemplate jdbc;
     private final DirectorRowMapper directorRowMapper;
+    private final FilmSearchIndex searchIndex;
+    private final FilmSuggestIndex suggestIndex;
 
     // Получение всех режиссеров из БД
     @Override
@@ -49,6 +56,10 @@ public class DirectorDbStorage implements DirectorStorage {
         }, keyHolder);
 
         director.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
+        AfterCommit.run(() -> {
+            searchIndex.onDirectorSaved(director);
+            suggestIndex.onDirectorSaved(director);
+        });
         return director;
     }
 
@@ -57,6 +68,10 @@ public class DirectorDbStorage implements DirectorStorage {
     public Director update(Director director) {
         String sql = "UPDATE directors SET name = ? WHERE id = ?";
         jdbc.update(sql, director.getName(), director.getId());
+        AfterCommit.run(() -> {
+            searchIndex.onDirectorSaved(director);
+            suggestIndex.onDirectorSaved(director);
+        });
         return director;
     }
 
@@ -65,39 +80,20 @@ public class DirectorDbStorage implements DirectorStorage {
     public void delete(Long id) {
         String sql = "DELETE FROM directors WHERE id = ?";
         jdbc.update(sql, id);
+        AfterCommit.run(() -> {
+            searchIndex.onDirectorDeleted(id);
+            suggestIndex.onDirectorDeleted(id);
+        });
     }
 
-    // Получение режиссеров для конкретного фильма
-    @Override
-    public Set<Director> getFilmDirectors(Long filmId) {
-        String sql = "SELECT d.id AS id, d.name as name FROM film_director fd " +
-                "JOIN directors d ON fd.director_id = d.id " +
-                "WHERE fd.film_id = ?";
-        return new HashSet<>(jdbc.query(sql, directorRowMapper, filmId));
-    }
-
-    // Получение режиссеров для списка фильмов (оптимизированный запрос)
+    // Режиссёры по набору ID одним запросом
     @Override
-    public Map<Long, Set<Director>> getDirectorsForFilms(List<Long> filmIds) {
-        if (filmIds.isEmpty()) {
-            return Collections.emptyMap();
-        }
-
-        String inSql = String.join(",", Collections.nCopies(filmIds.size(), "?"));
-        String sql = "SELECT fd.film_id, d.id, d.name FROM film_director fd " +
-                "JOIN directors d ON fd.director_id = d.id " +
-                "WHERE fd.film_id IN (" + inSql + ")";
-
-        return jdbc.query(sql, filmIds.toArray(), rs -> {
-            Map<Long, Set<Director>> result = new HashMap<>();
-            while (rs.next()) {
-                Long filmId = rs.getLong("film_id");
-                Director director = new Director();
-                director.setId(rs.getLong("id"));
-                director.setName(rs.getString("name"));
-                result.computeIfAbsent(filmId, k -> new HashSet<>()).add(director);
-            }
-            return result;
+    public Map<Long, Director> getDirectorsByIds(Collection<Long> ids) {
+        Map<Long, Director> result = new HashMap<>();
+        IdArrayLookup.query(jdbc, FIND_BY_IDS, ids, rs -> {
+            Director director = directorRowMapper.mapRow(rs, rs.getRow());
+            result.put(director.getId(), director);
         });
+        return result;
     }
-}
\ No newline at end of file
+}
@@ -3,11 +3,14 @@ package ru.yandex.practicum.filmorate.dal;
 import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dal.mapper.FeedRowMapper;
 import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
 import ru.yandex.practicum.filmorate.storage.FeedStorage;
 
 import java.util.Collection;
+import java.util.List;
 
 @Repository
 @RequiredArgsConstructor
@@ -15,6 +18,18 @@ public class FeedDbStorage implements FeedStorage {
     private static final String QUERY = "SELECT f.event_id,f.user_id,f.timestamp,f.entity_id, et.name as event_type, " +
             "o.name as event_operation FROM feeds f join event_type as et on f.event_type_id = et.id join operations " +
             "as o on f.event_operation_id = o.id WHERE f.user_id = ?";
+    private static final String INSERT_QUERY = "INSERT INTO feeds (user_id, timestamp, entity_id, event_type_id, " +
+            "event_operation_id) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_OUTBOX_QUERY = "INSERT INTO feed_outbox (user_id, timestamp, entity_id, " +
+            "event_type_id, event_operation_id) VALUES (?, ?, ?, ?, ?)";
+    private static final String OUTBOX_IDS_QUERY = "SELECT id FROM feed_outbox ORDER BY id LIMIT ?";
+    // события пользователей, удалённых до переноса, отбрасываются вместе с их лентой
+    private static final String RELAY_OUTBOX_QUERY = "INSERT INTO feeds (user_id, timestamp, entity_id, event_type_id, " +
+            "event_operation_id) SELECT o.user_id, o.timestamp, o.entity_id, o.event_type_id, o.event_operation_id " +
+            "FROM feed_outbox o WHERE o.id = ANY(?) AND EXISTS (SELECT 1 FROM users u WHERE u.user_id = o.user_id) " +
+            "ORDER BY o.id";
+    private static final String DELETE_OUTBOX_QUERY = "DELETE FROM feed_outbox WHERE id = ANY(?)";
+    private static final String COUNT_OUTBOX_QUERY = "SELECT COUNT(*) FROM feed_outbox";
 
     private final JdbcTemplate jdbc;
     private final FeedRowMapper feedRowMapper;
@@ -24,4 +39,48 @@ public class FeedDbStorage implements FeedStorage {
     public Collection<Feed> getFeedUser(Long userId) {
         return jdbc.query(QUERY, feedRowMapper, userId);
     }
-}
\ No newline at end of file
+
+    // Пакетная запись событий в ленту в порядке списка, пакет фиксируется целиком
+    @Override
+    @Transactional
+    public void addEvents(List<FeedEvent> events) {
+        batch(INSERT_QUERY, events);
+    }
+
+    // Запись событий в outbox в транзакции вызывающего кода
+    @Override
+    public void addToOutbox(List<FeedEvent> events) {
+        batch(INSERT_OUTBOX_QUERY, events);
+    }
+
+    // Перенос не более limit самых старых событий из outbox в ленту, возвращает число обработанных строк.
+    // Переносятся и удаляются строки из выбранного набора id: строка с меньшим id из транзакции,
+    // зафиксированной после выборки, остаётся до следующего переноса
+    @Override
+    @Transactional
+    public int relayOutbox(int limit) {
+        List<Long> ids = jdbc.queryForList(OUTBOX_IDS_QUERY, Long.class, limit);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Object[] idArray = ids.toArray();
+        jdbc.update(RELAY_OUTBOX_QUERY, ps -> ps.setArray(1, ps.getConnection().createArrayOf("BIGINT", idArray)));
+        return jdbc.update(DELETE_OUTBOX_QUERY,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("BIGINT", idArray)));
+    }
+
+    @Override
+    public int countOutbox() {
+        return jdbc.queryForObject(COUNT_OUTBOX_QUERY, Integer.class);
+    }
+
+    private void batch(String query, List<FeedEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        jdbc.batchUpdate(query, events.stream()
+                .map(event -> new Object[]{event.userId(), event.timestamp(), event.entityId(),
+                        event.type().getId(), event.operation().getId()})
+                .toList());
+    }
+}
@@ -1,23 +1,43 @@
 package ru.yandex.practicum.filmorate.dal;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
-import ru.yandex.practicum.filmorate.dal.mapper.FilmRowMapper;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.feed.FeedEventPublisher;
+import ru.yandex.practicum.filmorate.index.AfterCommit;
+import ru.yandex.practicum.filmorate.index.ExistenceIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 
+import java.sql.Array;
 import java.sql.PreparedStatement;
-import java.sql.Statement;
-import java.time.Instant;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Repository
@@ -25,92 +45,129 @@ import java.util.stream.Collectors;
 public class FilmDbStorage implements FilmStorage {
     private static final String INSERT_QUERY = "INSERT INTO films(title, description, release_date, duration, MPA_id) " +
             "VALUES (?, ?, ?, ?, ?)";
-    private static final String FIND_ALL_QUERY = "SELECT f.film_id, f.title, f.description, f.release_date, " +
-            "f.duration, f.mpa_id, m.name FROM films AS f LEFT JOIN mpa AS m ON f.MPA_id = m.id ";
+    private static final String FIND_ALL_QUERY = FilmHydrator.SELECT_FILMS + "ORDER BY f.film_id";
+    private static final String FIND_AFTER_QUERY = FilmHydrator.SELECT_FILMS + "WHERE f.film_id > ? ORDER BY f.film_id";
     private static final String UPDATE_QUERY = "UPDATE films SET title = ?, description = ?, release_date = ?, " +
             "duration = ?, mpa_id = ? WHERE film_id = ?";
     private static final String DELETE_QUERY = "DELETE FROM films WHERE film_id = ?";
-    private static final String NEWFIND = "SELECT f.film_id, f.title, f.description, f.release_date, f.duration, " +
-            "f.mpa_id, m.name FROM films AS f LEFT JOIN mpa AS m ON f.MPA_id = m.id WHERE f.film_id = ?";
-    private static final String LIKE_QUERY = "INSERT INTO likes(film_id, user_id) VALUES(?, ?)";
+    // Вставка только при отсутствии пары: 1 — лайк добавлен, 0 — уже был
+    private static final String LIKE_QUERY = "MERGE INTO likes l USING (VALUES (CAST(? AS INTEGER), CAST(? AS INTEGER))) " +
+            "AS s(film_id, user_id) ON l.film_id = s.film_id AND l.user_id = s.user_id " +
+            "WHEN NOT MATCHED THEN INSERT (film_id, user_id) VALUES (s.film_id, s.user_id)";
     private static final String DELETE_LIKE_QUERY = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
 
-    private static final String SEARCH_BY_TITLE_AND_DIRECTOR = "SELECT f.film_id, f.title, f.description, f.release_date, f.duration, " +
-            "f.mpa_id, m.name FROM films f " +
-            "LEFT JOIN likes l ON f.film_id = l.film_id " +
-            "JOIN mpa m ON f.mpa_id = m.id " +
-            "LEFT JOIN film_director fd ON f.film_id = fd.film_id " +
-            "LEFT JOIN directors d ON fd.director_id = d.id " +
-            "WHERE (LOWER(f.title) LIKE LOWER(?) OR LOWER(d.name) LIKE LOWER(?)) " +
-            "GROUP BY f.film_id, m.name " +
-            "ORDER BY COUNT(l.user_id) DESC";
-
-    private static final String SEARCH_BY_TITLE = "SELECT f.film_id, f.title, f.description, f.release_date, f.duration, " +
-            "f.mpa_id, m.name FROM films f " +
-            "LEFT JOIN likes l ON f.film_id = l.film_id " +
-            "JOIN mpa m ON f.mpa_id = m.id " +
-            "WHERE LOWER(f.title) LIKE LOWER(?) " +
-            "GROUP BY f.film_id, m.name " +
-            "ORDER BY COUNT(l.user_id) DESC";
-
-    private static final String SEARCH_BY_DIRECTOR = "SELECT f.film_id, f.title, f.description, f.release_date, f.duration, " +
-            "f.mpa_id, m.name FROM films f " +
-            "LEFT JOIN likes l ON f.film_id = l.film_id " +
-            "JOIN mpa m ON f.mpa_id = m.id " +
-            "LEFT JOIN film_director fd ON f.film_id = fd.film_id " +
-            "LEFT JOIN directors d ON fd.director_id = d.id " +
-            "WHERE LOWER(d.name) LIKE LOWER(?) " +
-            "GROUP BY f.film_id, m.name " +
-            "ORDER BY COUNT(l.user_id) DESC";
+    private static final String TITLE_MATCHES = "LOWER(f.title) LIKE ?";
+    private static final String DIRECTOR_MATCHES = "EXISTS (SELECT 1 FROM film_director fd " +
+            "JOIN directors d ON fd.director_id = d.id WHERE fd.film_id = f.film_id AND LOWER(d.name) LIKE ?)";
+    private static final String BY_POPULARITY = " ORDER BY f.likes_count DESC, f.film_id";
+
+    private static final String SEARCH_BY_TITLE_AND_DIRECTOR = FilmHydrator.SELECT_FILMS +
+            "WHERE " + TITLE_MATCHES + " OR " + DIRECTOR_MATCHES + BY_POPULARITY;
+
+    private static final String SEARCH_BY_TITLE = FilmHydrator.SELECT_FILMS +
+            "WHERE " + TITLE_MATCHES + BY_POPULARITY;
+
+    private static final String SEARCH_BY_DIRECTOR = FilmHydrator.SELECT_FILMS +
+            "WHERE " + DIRECTOR_MATCHES + BY_POPULARITY;
+
+    private static final String SUGGEST_BY_TITLE = FilmHydrator.SELECT_FILMS +
+            "WHERE LOWER(f.title) LIKE ? ESCAPE '\\' OR LOWER(f.title) LIKE ? ESCAPE '\\'" + BY_POPULARITY + " LIMIT ?";
+
+    private static final String CURRENT_LINKS_QUERY = "SELECT " +
+            "ARRAY(SELECT fg.genre_id FROM film_genre fg WHERE fg.film_id = f.film_id) AS genre_ids, " +
+            "ARRAY(SELECT fd.director_id FROM film_director fd WHERE fd.film_id = f.film_id) AS director_ids " +
+            "FROM films f WHERE f.film_id = ?";
+    private static final String INSERT_GENRE_QUERY = "INSERT INTO film_genre(film_id, genre_id) VALUES (?, ?)";
+    private static final String DELETE_GENRE_QUERY = "DELETE FROM film_genre WHERE film_id = ? AND genre_id = ?";
+    private static final String INSERT_DIRECTOR_QUERY = "INSERT INTO film_director(film_id, director_id) VALUES (?, ?)";
+    private static final String DELETE_DIRECTOR_QUERY = "DELETE FROM film_director WHERE film_id = ? AND director_id = ?";
 
     private static final String EXISTS_QUERY = "SELECT 1 FROM films f WHERE f.film_id = ?";
 
-    private static final String RECOMMENDATION_QUERY = "SELECT f.*, m.name AS mpa_name FROM films f JOIN mpa m ON " +
-            "f.mpa_id = m.id WHERE f.film_id in (SELECT film_id FROM likes WHERE user_id in (SELECT user_id FROM likes" +
+    private static final String RECOMMENDATION_QUERY = FilmHydrator.SELECT_FILMS +
+            "WHERE f.film_id in (SELECT film_id FROM likes WHERE user_id in (SELECT user_id FROM likes" +
             " WHERE film_id in (SELECT film_id FROM likes WHERE user_id = ?) and user_id not in (?) GROUP BY user_id " +
             "limit 1)) and f.film_id not in (SELECT film_id FROM likes WHERE user_id = ?)";
 
-    private static final String POPULAR_QUERY = "SELECT f.*, m.name AS mpa_name, COUNT(l.user_id) AS likes_count " +
-            "FROM films f LEFT JOIN likes l ON f.film_id = l.film_id JOIN mpa m ON f.mpa_id = m.id " +
-            "GROUP BY f.film_id ORDER BY likes_count DESC, f.film_id  LIMIT ?";
-
-    private static final String POPULAR_QUERY_BY_YEAR = "SELECT f.*, m.name AS mpa_name, COUNT(l.user_id) AS likes_count " +
-            "FROM films f LEFT JOIN likes l ON f.film_id = l.film_id JOIN mpa m ON f.mpa_id = m.id " +
-            "WHERE extract(YEAR from CAST(release_date AS date)) = ?" +
-            "GROUP BY f.film_id ORDER BY likes_count DESC, film_id LIMIT ?";
-
-    private static final String POPULAR_QUERY_BY_GENRE = "SELECT f.*, m.name AS mpa_name," +
-            " COUNT(l.user_id) AS likes_count FROM films f " +
-            "LEFT JOIN likes l ON f.film_id = l.film_id JOIN mpa m ON f.mpa_id = m.id " +
-            "LEFT JOIN film_genre fg on f.film_id = fg.film_id " +
-            "WHERE fg.genre_id = ?" +
-            "GROUP BY f.film_id ORDER BY likes_count DESC, f.film_id LIMIT ?";
-
-    private static final String POPULAR_QUERY_BY_GENRE_AND_YEAR = "SELECT f.*, m.name AS mpa_name," +
-            " COUNT(l.user_id) AS likes_count FROM films f " +
-            "LEFT JOIN likes l ON f.film_id = l.film_id JOIN mpa m ON f.mpa_id = m.id " +
-            "LEFT JOIN film_genre fg on f.film_id = fg.film_id " +
-            "WHERE fg.genre_id = ? AND EXTRACT(YEAR from CAST(release_date AS date)) = ?" +
-            "GROUP BY f.film_id ORDER BY likes_count DESC, f.film_id LIMIT ?";
-
-    private static final String COMMON_FILMS = "SELECT f.*, m.name AS mpa_name, count(l.user_id) AS likes_count FROM films f " +
-            "LEFT JOIN likes l on f.film_id = l.film_id JOIN mpa m ON f.mpa_id = m.id " +
+    private static final String POPULAR_QUERY = FilmHydrator.SELECT_FILMS +
+            "ORDER BY f.likes_count DESC, f.film_id LIMIT ?";
+
+    private static final String POPULAR_QUERY_BY_YEAR = FilmHydrator.SELECT_FILMS +
+            "WHERE f.release_year = ? " +
+            "ORDER BY f.likes_count DESC, f.film_id LIMIT ?";
+
+    private static final String POPULAR_QUERY_BY_GENRE = FilmHydrator.SELECT_FILMS +
+            "WHERE EXISTS (SELECT 1 FROM film_genre fg WHERE fg.film_id = f.film_id AND fg.genre_id = ?) " +
+            "ORDER BY f.likes_count DESC, f.film_id LIMIT ?";
+
+    private static final String POPULAR_QUERY_BY_GENRE_AND_YEAR = FilmHydrator.SELECT_FILMS +
+            "WHERE EXISTS (SELECT 1 FROM film_genre fg WHERE fg.film_id = f.film_id AND fg.genre_id = ?) " +
+            "AND f.release_year = ? " +
+            "ORDER BY f.likes_count DESC, f.film_id LIMIT ?";
+
+    private static final String DIRECTOR_FILMS_BY_YEAR = FilmHydrator.SELECT_FILMS +
+            "WHERE EXISTS (SELECT 1 FROM film_director fd WHERE fd.film_id = f.film_id AND fd.director_id = ?) " +
+            "ORDER BY f.release_date, f.film_id";
+
+    private static final String DIRECTOR_FILMS_BY_LIKES = FilmHydrator.SELECT_FILMS +
+            "WHERE EXISTS (SELECT 1 FROM film_director fd WHERE fd.film_id = f.film_id AND fd.director_id = ?)" +
+            BY_POPULARITY;
+
+    private static final String COMMON_FILMS = FilmHydrator.SELECT_FILMS +
             "WHERE EXISTS (SELECT 1 FROM likes ul WHERE f.film_id = ul.film_id AND ul.user_id = ?) " +
             "AND EXISTS (SELECT 1 FROM likes ul1 WHERE f.film_id = ul1.film_id AND ul1.user_id = ?) " +
-            "GROUP BY f.film_id " +
-            "ORDER BY likes_count DESC, f.film_id";
+            "ORDER BY f.likes_count DESC, f.film_id";
+
+    private static final String INCREMENT_LIKES_COUNT_QUERY = "UPDATE films SET likes_count = likes_count + ? " +
+            "WHERE film_id = ?";
+    private static final String DECREMENT_LIKES_COUNT_QUERY = "UPDATE films SET likes_count = likes_count - ? " +
+            "WHERE film_id = ?";
+
+    // Пересчёт счётчика только там, где он разошёлся с таблицей likes
+    private static final String RECONCILE_LIKES_COUNT_QUERY = "UPDATE films f " +
+            "SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id) " +
+            "WHERE f.likes_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)";
+    // те же фильмы, что загружает рейтинг: фильм без рейтинга MPA в популярные не попадает
+    private static final String LIKES_COUNTS_QUERY = "SELECT f.film_id, f.likes_count FROM films f " +
+            "JOIN mpa m ON f.mpa_id = m.id";
 
     private final JdbcTemplate jdbc;
-    private final FilmRowMapper mapper;
+    private final FilmHydrator hydrator;
+    private final PopularityLeaderboard leaderboard;
+    private final LikeIndex likeIndex;
+    private final FilmSearchIndex searchIndex;
+    private final FilmSuggestIndex suggestIndex;
+    private final FeedEventPublisher feedPublisher;
+    private final ExistenceIndex existenceIndex;
+
+    @Value("${filmorate.films.stream-fetch-size:500}")
+    private int streamFetchSize;
 
     // Получение всех фильмов из БД
     @Override
     public Collection<Film> getAll() {
-        return jdbc.query(FIND_ALL_QUERY, mapper);
+        return hydrator.query(FIND_ALL_QUERY);
+    }
+
+    // Страница фильмов по возрастанию id начиная после afterId
+    @Override
+    public List<Film> getFilms(Long afterId, Integer limit) {
+        long after = afterId == null ? 0 : afterId;
+        if (limit == null) {
+            return hydrator.query(FIND_AFTER_QUERY, after);
+        }
+        return hydrator.query(FIND_AFTER_QUERY + " LIMIT ?", after, limit);
+    }
+
+    // Все фильмы после afterId по одному из курсора
+    @Override
+    public void streamFilms(Long afterId, Consumer<Film> consumer) {
+        hydrator.stream(FIND_AFTER_QUERY, streamFetchSize, consumer, afterId == null ? 0 : afterId);
     }
 
     // Создание нового фильма с сохранением в БД
     @Override
+    @Transactional
     public Film create(Film film) {
         long id = insert(
                 INSERT_QUERY,
@@ -121,14 +178,78 @@ public class FilmDbStorage implements FilmStorage {
                 film.getMpa().getId()
         );
         film.setId(id);
-        saveGenres(film);
-        saveDirectors(film);
-        return getFilm(id).orElseThrow(() -> new IllegalStateException("Не сохранен фильм с Id " + id));
+        batchLinks(INSERT_GENRE_QUERY, id, genreIds(film));
+        batchLinks(INSERT_DIRECTOR_QUERY, id, directorIds(film));
+        AfterCommit.run(() -> {
+            existenceIndex.onFilmSaved(id);
+            leaderboard.onFilmSaved(film);
+            searchIndex.onFilmSaved(film);
+            suggestIndex.onFilmSaved(film);
+        });
+        return film;
     }
 
-    // Обновление данных фильма
+    // Пакетное создание фильмов в одной транзакции: фильмы, жанры и режиссёры — по одному пакету JDBC
     @Override
+    @Transactional
+    public List<Film> createAll(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(connection -> connection.prepareStatement(INSERT_QUERY, new String[]{"film_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Film film = films.get(i);
+                        ps.setString(1, film.getName());
+                        ps.setString(2, film.getDescription());
+                        ps.setObject(3, film.getReleaseDate());
+                        ps.setObject(4, film.getDuration());
+                        ps.setInt(5, film.getMpa().getId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != films.size()) {
+            throw new InternalServerException("Не удалось сохранить данные");
+        }
+        List<Object[]> genreArgs = new ArrayList<>();
+        List<Object[]> directorArgs = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            genreIds(film).forEach(genreId -> genreArgs.add(new Object[]{film.getId(), genreId}));
+            directorIds(film).forEach(directorId -> directorArgs.add(new Object[]{film.getId(), directorId}));
+        }
+        if (!genreArgs.isEmpty()) {
+            jdbc.batchUpdate(INSERT_GENRE_QUERY, genreArgs);
+        }
+        if (!directorArgs.isEmpty()) {
+            jdbc.batchUpdate(INSERT_DIRECTOR_QUERY, directorArgs);
+        }
+        AfterCommit.run(() -> films.forEach(film -> {
+            existenceIndex.onFilmSaved(film.getId());
+            leaderboard.onFilmSaved(film);
+            searchIndex.onFilmSaved(film);
+            suggestIndex.onFilmSaved(film);
+        }));
+        return films;
+    }
+
+    // Обновление данных фильма: связующие таблицы меняются только на разницу с текущим состоянием
+    @Override
+    @Transactional
     public Film update(Film film) {
+        Links current = jdbc.query(CURRENT_LINKS_QUERY, (rs, rowNum) -> new Links(
+                ids(rs.getArray("genre_ids")), ids(rs.getArray("director_ids"))), film.getId())
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new NotFoundException("Фильма с id " + film.getId() + " не найден."));
         update(
                 UPDATE_QUERY,
                 film.getName(),
@@ -138,57 +259,143 @@ public class FilmDbStorage implements FilmStorage {
                 film.getMpa().getId(),
                 film.getId()
         );
-        updateGenres(film);
-        updateDirectors(film);
-        return getFilm(film.getId()).orElseThrow(() -> new IllegalStateException("Не удалось обновить фильм с Id " + film.getId()));
+        applyDiff(DELETE_GENRE_QUERY, INSERT_GENRE_QUERY, film.getId(), current.genreIds(), genreIds(film));
+        applyDiff(DELETE_DIRECTOR_QUERY, INSERT_DIRECTOR_QUERY, film.getId(), current.directorIds(), directorIds(film));
+        AfterCommit.run(() -> {
+            leaderboard.onFilmSaved(film);
+            searchIndex.onFilmSaved(film);
+            suggestIndex.onFilmSaved(film);
+        });
+        return film;
     }
 
     // Удаление фильма по ID
     @Override
     public void deleteFilm(Long filmId) {
         delete(DELETE_QUERY, filmId);
+        AfterCommit.run(() -> {
+            existenceIndex.onFilmDeleted(filmId);
+            leaderboard.onFilmDeleted(filmId);
+            likeIndex.onFilmDeleted(filmId);
+            searchIndex.onFilmDeleted(filmId);
+            suggestIndex.onFilmDeleted(filmId);
+        });
     }
 
     // Получение фильма по ID
     @Override
     public Optional<Film> getFilm(Long filmId) {
-        try {
-            Film film = jdbc.queryForObject(NEWFIND, mapper, filmId);
-            return Optional.ofNullable(film);
-        } catch (EmptyResultDataAccessException e) {
-            return Optional.empty();
-        }
+        return hydrator.getFilm(filmId);
+    }
+
+    // Получение фильмов по списку ID с сохранением порядка списка
+    @Override
+    public List<Film> getFilmsByIds(List<Long> filmIds) {
+        return hydrator.getFilmsByIds(filmIds);
     }
 
-    // Добавление лайка фильму от пользователя
+    // Добавление лайка, счётчика и события ленты в одной транзакции; повторный лайк не меняет ни счётчик, ни ленту.
+    // Строка фильма со счётчиком — самая спорная блокировка, поэтому она обновляется последней перед фиксацией.
     @Override
+    @Transactional
     public void addLike(Long filmId, Long userId) {
         existFilmById(filmId);
-        jdbc.update(LIKE_QUERY, filmId, userId);
-
-        String feedquery = "INSERT INTO feeds (user_id, timestamp, entity_id, event_type_id, event_operation_id) VALUES (?,?,?,?,?)";
-        update(feedquery, userId, Instant.now().toEpochMilli(), filmId, 1, 2);
+        int added = mergeLike(filmId, userId);
+        if (added > 0) {
+            feedPublisher.publish(FeedEvent.of(userId, filmId, FeedEvent.Type.LIKE, FeedEvent.Operation.ADD));
+            jdbc.update(INCREMENT_LIKES_COUNT_QUERY, added, filmId);
+            AfterCommit.run(() -> {
+                leaderboard.onLikesChanged(filmId, added);
+                suggestIndex.onLikesChanged(filmId, added);
+                likeIndex.onLike(filmId, userId);
+            });
+        }
     }
 
-    // Удаление лайка у фильма
+    // Удаление лайка, счётчика и событие ленты в одной транзакции; удаление несуществующего лайка
+    // не меняет ни счётчик, ни ленту
     @Override
+    @Transactional
     public void deleteLike(Long filmId, Long userId) {
         existFilmById(filmId);
+        int removed = jdbc.update(DELETE_LIKE_QUERY, filmId, userId);
+        if (removed > 0) {
+            feedPublisher.publish(FeedEvent.of(userId, filmId, FeedEvent.Type.LIKE, FeedEvent.Operation.REMOVE));
+            jdbc.update(DECREMENT_LIKES_COUNT_QUERY, removed, filmId);
+            AfterCommit.run(() -> {
+                leaderboard.onLikesChanged(filmId, -removed);
+                suggestIndex.onLikesChanged(filmId, -removed);
+                likeIndex.onUnlike(filmId, userId);
+            });
+        }
+    }
 
-        String feedQuery = "INSERT INTO feeds (user_id, timestamp, entity_id, event_type_id, event_operation_id) VALUES (?,?,?,?,?)";
-        update(feedQuery, userId, Instant.now().toEpochMilli(), filmId, 1, 1);
+    // Пакетная запись накопленных лайков: итоговое состояние пар и события ленты в одной транзакции.
+    // Счётчики меняются только на реально добавленные и удалённые строки, фильмы обновляются последними.
+    // В ленту, как и при синхронной записи, попадают только действия, которые меняли состояние пары.
+    @Override
+    @Transactional
+    public void applyLikes(Collection<LikeEvent> likes, List<LikeEvent> feedEvents) {
+        List<LikeEvent> added = likes.stream().filter(LikeEvent::added).toList();
+        List<LikeEvent> removed = likes.stream().filter(like -> !like.added()).toList();
+        List<LikeEvent> changed = new ArrayList<>();
+        Map<Long, Integer> deltas = new TreeMap<>();
+        countChanges(batch(LIKE_QUERY, added.stream()
+                .map(like -> new Object[]{like.filmId(), like.userId()}).toList()), added, changed, deltas);
+        countChanges(batch(DELETE_LIKE_QUERY, removed.stream()
+                .map(like -> new Object[]{like.filmId(), like.userId()}).toList()), removed, changed, deltas);
+        feedPublisher.publish(stateChanges(likes, changed, feedEvents).stream()
+                .map(event -> new FeedEvent(event.userId(), event.filmId(), FeedEvent.Type.LIKE,
+                        event.added() ? FeedEvent.Operation.ADD : FeedEvent.Operation.REMOVE, event.timestamp()))
+                .toList());
+        batch(INCREMENT_LIKES_COUNT_QUERY, deltas.entrySet().stream()
+                .filter(delta -> delta.getValue() != 0)
+                .map(delta -> new Object[]{delta.getValue(), delta.getKey()})
+                .toList());
+        AfterCommit.run(() -> {
+            deltas.forEach((filmId, delta) -> {
+                leaderboard.onLikesChanged(filmId, delta);
+                suggestIndex.onLikesChanged(filmId, delta);
+            });
+            changed.forEach(like -> {
+                if (like.added()) {
+                    likeIndex.onLike(like.filmId(), like.userId());
+                } else {
+                    likeIndex.onUnlike(like.filmId(), like.userId());
+                }
+            });
+        });
+    }
+
+    // Сверка денормализованного счётчика лайков с таблицей likes, возвращает число исправленных фильмов
+    @Override
+    @Transactional
+    public int reconcileLikesCount() {
+        return jdbc.update(RECONCILE_LIKES_COUNT_QUERY);
+    }
 
-        jdbc.update(DELETE_LIKE_QUERY, filmId, userId);
+    // Текущие счётчики лайков фильмов с рейтингом MPA для сверки индексов в памяти
+    @Override
+    public Map<Long, Long> getLikesCounts() {
+        Map<Long, Long> counts = new HashMap<>();
+        jdbc.query(LIKES_COUNTS_QUERY, rs -> {
+            counts.put(rs.getLong("film_id"), rs.getLong("likes_count"));
+        });
+        return counts;
     }
 
     // Получение списка популярных фильмов
     @Override
     public Collection<Film> getPopularFilms(Integer count) {
-        return jdbc.query(POPULAR_QUERY, mapper, count);
+        return hydrator.query(POPULAR_QUERY, count);
     }
 
-    // Проверка существования фильма
+    // Проверка существования фильма: сначала индекс в памяти, если id там нет — БД
+    @Override
     public boolean exists(Long filmId) {
+        if (existenceIndex.containsFilm(filmId)) {
+            return true;
+        }
         try {
             Integer result = jdbc.queryForObject(
                     EXISTS_QUERY,
@@ -211,74 +418,65 @@ public class FilmDbStorage implements FilmStorage {
         }
 
         if (by.contains("title") && by.contains("director")) {
-            return jdbc.query(SEARCH_BY_TITLE_AND_DIRECTOR, mapper, searchPattern, searchPattern);
+            return hydrator.query(SEARCH_BY_TITLE_AND_DIRECTOR, searchPattern, searchPattern);
         } else if (by.contains("title")) {
-            return jdbc.query(SEARCH_BY_TITLE, mapper, searchPattern);
+            return hydrator.query(SEARCH_BY_TITLE, searchPattern);
         } else if (by.contains("director")) {
-            return jdbc.query(SEARCH_BY_DIRECTOR, mapper, searchPattern);
+            return hydrator.query(SEARCH_BY_DIRECTOR, searchPattern);
         }
 
         return Collections.emptyList();
     }
 
+    // Фильмы, одно из слов названия которых начинается с префикса, по популярности
+    @Override
+    public List<Film> suggestFilms(String prefix, int limit) {
+        String escaped = prefix.toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return hydrator.query(SUGGEST_BY_TITLE, escaped + "%", "% " + escaped + "%", limit);
+    }
+
     // Получение фильмов режиссера с сортировкой по году или популярности
     @Override
     public Collection<Film> getFilmsByDirector(Long directorId, String sortBy) {
-        String sql;
-        if ("year".equals(sortBy)) {
-            sql = "SELECT f.film_id, f.title, f.description, f.release_date, f.duration, " +
-                    "f.mpa_id, m.name FROM films f " +
-                    "JOIN film_director fd ON f.film_id = fd.film_id " +
-                    "JOIN mpa m ON f.mpa_id = m.id " +
-                    "WHERE fd.director_id = ? " +
-                    "ORDER BY f.release_date";
-        } else {
-            sql = "SELECT f.film_id, f.title, f.description, f.release_date, f.duration, " +
-                    "f.mpa_id, m.name FROM films f " +
-                    "LEFT JOIN likes l ON f.film_id = l.film_id " +
-                    "JOIN film_director fd ON f.film_id = fd.film_id " +
-                    "JOIN mpa m ON f.mpa_id = m.id " +
-                    "WHERE fd.director_id = ? " +
-                    "GROUP BY f.film_id, m.name " +
-                    "ORDER BY COUNT(l.user_id) DESC";
-        }
-
-        return jdbc.query(sql, mapper, directorId);
+        return hydrator.query("year".equals(sortBy) ? DIRECTOR_FILMS_BY_YEAR : DIRECTOR_FILMS_BY_LIKES, directorId);
     }
 
     @Override
     public Collection<Film> getPopularFilmsByYear(Integer count, Integer year) {
-        return jdbc.query(POPULAR_QUERY_BY_YEAR, mapper, year, count);
+        return hydrator.query(POPULAR_QUERY_BY_YEAR, year, count);
     }
 
     @Override
     public Collection<Film> getPopularFilmsByGenre(Integer count, Integer genre) {
-        return jdbc.query(POPULAR_QUERY_BY_GENRE, mapper, genre, count);
+        return hydrator.query(POPULAR_QUERY_BY_GENRE, genre, count);
     }
 
     @Override
     public Collection<Film> getPopularFilmsByGenreAndYear(Integer count, Integer genre, Integer year) {
-        return jdbc.query(POPULAR_QUERY_BY_GENRE_AND_YEAR, mapper, genre, year, count);
+        return hydrator.query(POPULAR_QUERY_BY_GENRE_AND_YEAR, genre, year, count);
     }
 
     // Получение общих фильмов двух пользователей
     @Override
     public Collection<Film> getCommonFilms(Long userId, Long friendId) {
-        return jdbc.query(COMMON_FILMS, mapper, userId, friendId);
+        return hydrator.query(COMMON_FILMS, userId, friendId);
     }
 
     // Получение рекомендаций фильмов для пользователя
     @Override
     public Collection<Film> getRecommendations(Long userId) {
-        return jdbc.query(RECOMMENDATION_QUERY, mapper, userId, userId, userId);
+        return hydrator.query(RECOMMENDATION_QUERY, userId, userId, userId);
     }
 
-    // Вставка данных с возвратом сгенерированного ID
+    // Вставка данных с возвратом сгенерированного ID (release_year тоже вычисляемый, поэтому ключ указан явно)
     private long insert(String query, Object... params) {
         GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
         jdbc.update(connection -> {
             PreparedStatement ps = connection
-                    .prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
+                    .prepareStatement(query, new String[]{"film_id"});
             for (int idx = 0; idx < params.length; idx++) {
                 ps.setObject(idx + 1, params[idx]);
             }
@@ -305,61 +503,103 @@ public class FilmDbStorage implements FilmStorage {
         int rowsDeleted = jdbc.update(query, id);
     }
 
+    private int[] batch(String query, List<Object[]> batchArgs) {
+        return batchArgs.isEmpty() ? new int[0] : jdbc.batchUpdate(query, batchArgs);
+    }
+
+    // Учитывает строки, которые пакет действительно изменил
+    private static void countChanges(int[] counts, List<LikeEvent> likes, List<LikeEvent> changed,
+                                     Map<Long, Integer> deltas) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                LikeEvent like = likes.get(i);
+                changed.add(like);
+                deltas.merge(like.filmId(), like.added() ? 1 : -1, Integer::sum);
+            }
+        }
+    }
+
+    // Начальное состояние пары восстанавливается по итоговой записи: если строка вставлена или удалена,
+    // до пакета было противоположное состояние, иначе — то же. Событие проходит, только если меняет состояние
+    private static List<LikeEvent> stateChanges(Collection<LikeEvent> likes, List<LikeEvent> changed,
+                                                List<LikeEvent> feedEvents) {
+        Map<LikePair, Boolean> liked = new HashMap<>();
+        likes.forEach(like -> liked.put(new LikePair(like.filmId(), like.userId()), like.added()));
+        changed.forEach(like -> liked.put(new LikePair(like.filmId(), like.userId()), !like.added()));
+        List<LikeEvent> events = new ArrayList<>();
+        for (LikeEvent event : feedEvents) {
+            Boolean before = liked.put(new LikePair(event.filmId(), event.userId()), event.added());
+            if (before != null && before != event.added()) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    // Одновременная вставка той же пары другой транзакцией упирается в первичный ключ: лайк уже есть
+    private int mergeLike(Long filmId, Long userId) {
+        try {
+            return jdbc.update(LIKE_QUERY, filmId, userId);
+        } catch (DuplicateKeyException e) {
+            return 0;
+        }
+    }
+
     // Проверка существования фильма по ID
     private void existFilmById(Long filmId) {
-        Film film = getFilm(filmId).orElseThrow(() -> new NotFoundException("Фильм с ID " +
-                filmId + " не найден."));
+        if (!exists(filmId)) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден.");
+        }
     }
 
-    // Сохранение жанров фильма
-    private void saveGenres(Film film) {
-        if (film.getGenres() == null || film.getGenres().isEmpty()) {
-            return;
+    private static Set<Long> genreIds(Film film) {
+        if (film.getGenres() == null) {
+            return Set.of();
         }
-        String sql = "INSERT INTO film_genre(film_id, genre_id) VALUES (?, ?)";
-        List<Object[]> batchArgs = film.getGenres().stream()
-                .map(genre -> new Object[]{film.getId(), genre.getId()})
-                .collect(Collectors.toList());
-        jdbc.batchUpdate(sql, batchArgs);
+        return film.getGenres().stream().map(genre -> (long) genre.getId()).collect(Collectors.toSet());
     }
 
-    // Обновление жанров фильма
-    private void updateGenres(Film film) {
-        String deleteSql = "DELETE FROM film_genre WHERE film_id = ?";
-        jdbc.update(deleteSql, film.getId());
-        if (film.getGenres() == null || film.getGenres().isEmpty()) {
-            return;
+    private static Set<Long> directorIds(Film film) {
+        if (film.getDirectors() == null) {
+            return Set.of();
         }
-        String sql = "INSERT INTO film_genre(film_id, genre_id) VALUES (?, ?)";
-        List<Object[]> batchArgs = film.getGenres().stream()
-                .map(genre -> new Object[]{film.getId(), genre.getId()})
-                .collect(Collectors.toList());
-        jdbc.batchUpdate(sql, batchArgs);
+        return film.getDirectors().stream().map(Director::getId).collect(Collectors.toSet());
     }
 
-    // Сохранение режиссеров фильма
-    private void saveDirectors(Film film) {
-        if (film.getDirectors() == null || film.getDirectors().isEmpty()) {
-            return;
+    private static Set<Long> ids(Array array) throws SQLException {
+        Set<Long> ids = new HashSet<>();
+        if (array != null) {
+            for (Object id : (Object[]) array.getArray()) {
+                ids.add(((Number) id).longValue());
+            }
         }
-        String sql = "INSERT INTO film_director(film_id, director_id) VALUES (?, ?)";
-        List<Object[]> batchArgs = film.getDirectors().stream()
-                .map(director -> new Object[]{film.getId(), director.getId()})
-                .collect(Collectors.toList());
-        jdbc.batchUpdate(sql, batchArgs);
+        return ids;
+    }
+
+    // Удаляет лишние и добавляет недостающие связи фильма
+    private void applyDiff(String deleteQuery, String insertQuery, Long filmId, Set<Long> current, Set<Long> target) {
+        Set<Long> removed = new HashSet<>(current);
+        removed.removeAll(target);
+        Set<Long> added = new HashSet<>(target);
+        added.removeAll(current);
+        batchLinks(deleteQuery, filmId, removed);
+        batchLinks(insertQuery, filmId, added);
     }
 
-    // Обновление режиссеров фильма
-    private void updateDirectors(Film film) {
-        String deleteSql = "DELETE FROM film_director WHERE film_id = ?";
-        jdbc.update(deleteSql, film.getId());
-        if (film.getDirectors() == null || film.getDirectors().isEmpty()) {
+    // Пакетное выполнение запроса для пар (film_id, id) одним обращением к БД
+    private void batchLinks(String query, Long filmId, Set<Long> ids) {
+        if (ids.isEmpty()) {
             return;
         }
-        String sql = "INSERT INTO film_director(film_id, director_id) VALUES (?, ?)";
-        List<Object[]> batchArgs = film.getDirectors().stream()
-                .map(director -> new Object[]{film.getId(), director.getId()})
+        List<Object[]> batchArgs = ids.stream()
+                .map(id -> new Object[]{filmId, id})
                 .collect(Collectors.toList());
-        jdbc.batchUpdate(sql, batchArgs);
+        jdbc.batchUpdate(query, batchArgs);
+    }
+
+    private record Links(Set<Long> genreIds, Set<Long> directorIds) {
+    }
+
+    private record LikePair(long filmId, long userId) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Собирает фильмы вместе с жанрами и режиссёрами за один запрос.
+ * Идентификаторы жанров агрегируются в массив прямо в строке фильма, названия жанров берутся
+ * из {@link ReferenceDataRegistry}. Режиссёры приходят одним массивом пар "id:имя" из того же запроса.
+ */
+@Component
+@RequiredArgsConstructor
+public class FilmHydrator {
+    public static final String SELECT_FILMS = "SELECT f.film_id, f.title, f.description, f.release_date, " +
+            "f.duration, f.mpa_id, m.name, " +
+            "ARRAY(SELECT g.id FROM genre g WHERE g.id IN " +
+            "(SELECT fg.genre_id FROM film_genre fg WHERE fg.film_id = f.film_id) ORDER BY g.id) AS genre_ids, " +
+            "ARRAY(SELECT d.id || ':' || d.name FROM directors d WHERE d.id IN " +
+            "(SELECT fd.director_id FROM film_director fd WHERE fd.film_id = f.film_id) ORDER BY d.id) AS directors " +
+            "FROM films f JOIN mpa m ON f.mpa_id = m.id ";
+    private static final String SELECT_BY_IDS = SELECT_FILMS + "WHERE f.film_id = ANY(?)";
+
+    private final JdbcTemplate jdbc;
+    private final FilmRowMapper filmRowMapper;
+    private final ReferenceDataRegistry referenceData;
+
+    // Фильмы по запросу, который начинается с SELECT_FILMS
+    public List<Film> query(String sql, Object... params) {
+        return jdbc.query(sql, rowMapper(), params);
+    }
+
+    // Построчная выдача фильмов из однонаправленного курсора: результат не накапливается в памяти,
+    // жанры и режиссёры приходят в той же строке
+    public void stream(String sql, int fetchSize, Consumer<Film> consumer, Object... params) {
+        RowMapper<Film> mapper = rowMapper();
+        jdbc.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int idx = 0; idx < params.length; idx++) {
+                ps.setObject(idx + 1, params[idx]);
+            }
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(mapper.mapRow(rs, rs.getRow())));
+    }
+
+    public Optional<Film> getFilm(Long filmId) {
+        return query(SELECT_FILMS + "WHERE f.film_id = ?", filmId).stream().findFirst();
+    }
+
+    // Фильмы по списку ID в порядке списка
+    public List<Film> getFilmsByIds(List<Long> filmIds) {
+        Map<Long, Film> films = new HashMap<>();
+        RowMapper<Film> mapper = rowMapper();
+        IdArrayLookup.query(jdbc, SELECT_BY_IDS, filmIds, rs -> {
+            Film film = mapper.mapRow(rs, rs.getRow());
+            films.put(film.getId(), film);
+        });
+        return filmIds.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private RowMapper<Film> rowMapper() {
+        return (rs, rowNum) -> {
+            Film film = filmRowMapper.mapRow(rs, rowNum);
+            film.setGenres(genres(rs));
+            film.setDirectors(directors(rs));
+            return film;
+        };
+    }
+
+    private Set<Genre> genres(ResultSet rs) throws SQLException {
+        Set<Genre> genres = new TreeSet<>();
+        for (Object id : values(rs.getArray("genre_ids"))) {
+            Genre genre = new Genre();
+            genre.setId(((Number) id).intValue());
+            genre.setName(referenceData.getGenreName(genre.getId()));
+            genres.add(genre);
+        }
+        return genres;
+    }
+
+    private Set<Director> directors(ResultSet rs) throws SQLException {
+        Set<Director> directors = new HashSet<>();
+        for (Object value : values(rs.getArray("directors"))) {
+            String pair = (String) value;
+            int separator = pair.indexOf(':');
+            Director director = new Director();
+            director.setId(Long.parseLong(pair.substring(0, separator)));
+            director.setName(pair.substring(separator + 1));
+            directors.add(director);
+        }
+        return directors;
+    }
+
+    private static Object[] values(Array array) throws SQLException {
+        return array == null ? new Object[0] : (Object[]) array.getArray();
+    }
+}
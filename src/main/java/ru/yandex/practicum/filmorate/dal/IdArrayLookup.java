@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Выборка по набору идентификаторов без IN-списков переменной длины.
+ * Идентификаторы передаются одним параметром-массивом ({@code WHERE id = ANY(?)}), поэтому текст запроса
+ * не зависит от размера набора и H2 разбирает и планирует его один раз. Большие наборы делятся на части.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class IdArrayLookup {
+    public static final int CHUNK_SIZE = 1000;
+
+    // Выполняет запрос с единственным параметром-массивом для каждой части набора; пустой набор не выполняется
+    public static void query(JdbcTemplate jdbc, String sql, Collection<Long> ids, RowCallbackHandler handler) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Long> all = new ArrayList<>(ids);
+        for (int from = 0; from < all.size(); from += CHUNK_SIZE) {
+            Object[] chunk = all.subList(from, Math.min(from + CHUNK_SIZE, all.size())).toArray();
+            jdbc.query(sql, ps -> ps.setArray(1, ps.getConnection().createArrayOf("BIGINT", chunk)), handler);
+        }
+    }
+}
@@ -1,10 +1,8 @@
 package ru.yandex.practicum.filmorate.dal;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
-import ru.yandex.practicum.filmorate.dal.mapper.MpaRowMapper;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.MpaStorage;
 
@@ -14,25 +12,17 @@ import java.util.Optional;
 @Repository
 @RequiredArgsConstructor
 public class MpaDbStorage implements MpaStorage {
-    private static final String FIND_ALL_QUERY = "SELECT id, name FROM mpa";
-    private static final String FIND_BY_ID_QUERY = "SELECT id, name FROM mpa WHERE id = ?";
-    private final JdbcTemplate jdbc;
-    private final MpaRowMapper mapper;
+    private final ReferenceDataRegistry referenceData;
 
-    // Получает все рейтинги из таблицы mpa
+    // Получает все рейтинги из справочника в памяти
     @Override
     public List<Mpa> getAll() {
-        return jdbc.query(FIND_ALL_QUERY, mapper);
+        return referenceData.getAllMpa();
     }
 
-    // Получает рейтинг по его ID
+    // Получает рейтинг по его ID из справочника в памяти
     @Override
     public Optional<Mpa> getMpa(Integer mpaId) {
-        try {
-            Mpa mpa = jdbc.queryForObject(FIND_BY_ID_QUERY, mapper, mpaId);
-            return Optional.ofNullable(mpa);
-        } catch (EmptyResultDataAccessException e) {
-            return Optional.empty();
-        }
+        return referenceData.getMpa(mpaId);
     }
-}
\ No newline at end of file
+}
@@ -6,13 +6,16 @@ import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dal.mapper.ReviewRowMapper;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.feed.FeedEventPublisher;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
 import ru.yandex.practicum.filmorate.model.Review;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
-import java.time.Instant;
 import java.util.Collection;
 import java.util.Optional;
 
@@ -23,32 +26,39 @@ public class ReviewDbStorage {
     private static final String INSERT_QUERY = "INSERT INTO reviews (user_id, film_id, positive, content)" +
             " VALUES (?, ?, ?, ?)";
     private static final String DELETE_QUERY = "DELETE FROM reviews r WHERE r.id = ?";
-    private static final String SELECT_QUERY = "SELECT r.*, (SELECT COUNT(*) FROM review_likes WHERE review_id = r.id) - " +
-            " (SELECT COUNT(*) FROM review_dislikes WHERE review_id = r.id) AS useful " +
-            "FROM reviews r " +
-            "WHERE r.id = ? ";
-    private static final String SELECT_ALL_QUERY = "SELECT r.*, (SELECT COUNT(*) FROM review_likes WHERE review_id = r.id) - " +
-            " (SELECT COUNT(*) FROM review_dislikes WHERE review_id = r.id) AS useful " +
-            "FROM reviews r " +
-            "GROUP BY r.id " +
-            "ORDER BY useful DESC " +
-            "LIMIT ?";
-    private static final String SELECT_ALL_BY_FILM_ID_QUERY = "SELECT r.*, (SELECT COUNT(*) FROM review_likes WHERE review_id = r.id) - " +
-            " (SELECT COUNT(*) FROM review_dislikes WHERE review_id = r.id) AS useful " +
-            "FROM reviews r " +
-            "WHERE r.film_id = ? " +
-            "GROUP BY r.id " +
-            "ORDER BY useful DESC " +
-            "LIMIT ?";
+    private static final String SELECT_QUERY = "SELECT r.* FROM reviews r WHERE r.id = ?";
+    // Отзывы по убыванию полезности читаются из индексов (useful DESC, id) и (film_id, useful DESC, id) без сортировки:
+    // индекс указан явно, film_id добавлен в ORDER BY, чтобы порядок совпадал с индексом.
+    // Курсор (afterUseful, afterId) — последний отзыв предыдущей страницы; useful <= ? задаёт начало диапазона индекса
+    private static final String AFTER_CURSOR = "r.useful <= ? AND (r.useful < ? OR r.id > ?)";
+    private static final String SELECT_ALL_QUERY = "SELECT r.* FROM reviews r USE INDEX (idx_reviews_useful) " +
+            "ORDER BY r.useful DESC, r.id LIMIT ?";
+    private static final String SELECT_ALL_AFTER_QUERY = "SELECT r.* FROM reviews r USE INDEX (idx_reviews_useful) " +
+            "WHERE " + AFTER_CURSOR + " ORDER BY r.useful DESC, r.id LIMIT ?";
+    private static final String SELECT_ALL_BY_FILM_ID_QUERY = "SELECT r.* FROM reviews r " +
+            "USE INDEX (idx_reviews_film_useful) WHERE r.film_id = ? " +
+            "ORDER BY r.film_id, r.useful DESC, r.id LIMIT ?";
+    private static final String SELECT_ALL_BY_FILM_ID_AFTER_QUERY = "SELECT r.* FROM reviews r " +
+            "USE INDEX (idx_reviews_film_useful) WHERE r.film_id = ? AND " + AFTER_CURSOR +
+            " ORDER BY r.film_id, r.useful DESC, r.id LIMIT ?";
     private static final String UPDATE_QUERY = "UPDATE reviews r SET user_id = ?, film_id = ?, positive = ?, " +
             " content = ? WHERE r.id = ?";
-    private static final String ADD_LIKE_QUERY = "INSERT INTO review_likes (review_id, user_id) VALUES (?, ?)";
-    private static final String ADD_DISLIKE_QUERY = "INSERT INTO review_dislikes (review_id, user_id) VALUES (?, ?)";
-    private static final String DELETE_LIKE_QUERY = "DELETE FROM review_likes r WHERE r.review_id = ? AND r.user_id = ?";
-    private static final String DELETE_DISLIKE_QUERY = "DELETE FROM review_dislikes r WHERE r.review_id = ? AND r.user_id = ?";
-    private static final String EXISTS_LIKE_QUERY = "SELECT 1 FROM review_likes r WHERE r.user_id = ? AND r.review_id = ?";
-    private static final String EXISTS_DISLIKE_QUERY = "SELECT 1 FROM review_dislikes r WHERE r.user_id = ? AND r.review_id = ?";
+    // Полезность меняется на разницу новой и прежней оценки пользователя; строка отзыва блокируется первой
+    private static final String VOTE_USEFUL_QUERY = "UPDATE reviews SET useful = useful + ? - COALESCE(" +
+            "(SELECT v.vote FROM review_votes v WHERE v.review_id = ? AND v.user_id = ?), 0) WHERE id = ?";
+    // Вставка или смена оценки: 1 — оценка изменилась, 0 — такая же уже стоит
+    private static final String VOTE_QUERY = "MERGE INTO review_votes v USING (VALUES (CAST(? AS BIGINT), " +
+            "CAST(? AS BIGINT), CAST(? AS SMALLINT))) AS s(review_id, user_id, vote) " +
+            "ON v.review_id = s.review_id AND v.user_id = s.user_id " +
+            "WHEN MATCHED AND v.vote <> s.vote THEN UPDATE SET vote = s.vote " +
+            "WHEN NOT MATCHED THEN INSERT (review_id, user_id, vote) VALUES (s.review_id, s.user_id, s.vote)";
+    private static final String REMOVE_VOTE_USEFUL_QUERY = "UPDATE reviews SET useful = useful - COALESCE(" +
+            "(SELECT v.vote FROM review_votes v WHERE v.review_id = ? AND v.user_id = ? AND v.vote = ?), 0) " +
+            "WHERE id = ?";
+    private static final String REMOVE_VOTE_QUERY = "DELETE FROM review_votes WHERE review_id = ? AND user_id = ? " +
+            "AND vote = ?";
     private final JdbcTemplate jdbcTemplate;
+    private final FeedEventPublisher feedPublisher;
     @Autowired
     private final ReviewRowMapper reviewRowMapper;
 
@@ -62,57 +72,27 @@ public class ReviewDbStorage {
                 review.getContent());
         review.setId(id);
 
-        String feedQuery = "INSERT INTO feeds (user_id, timestamp, entity_id, event_type_id, event_operation_id) " +
-                "VALUES (?,?,?,?,?)";
-        update(feedQuery, review.getUserId(), Instant.now().toEpochMilli(), review.getId(), 2, 2);
+        feedPublisher.publish(FeedEvent.of(review.getUserId(), review.getId(), FeedEvent.Type.REVIEW,
+                FeedEvent.Operation.ADD));
 
         return review;
     }
 
-    public void addLike(Long reviewId, Long userId) {
-        jdbcTemplate.update(ADD_LIKE_QUERY, reviewId, userId);
-    }
-
-    public void addDislike(Long reviewId, Long userId) {
-        jdbcTemplate.update(ADD_DISLIKE_QUERY, reviewId, userId);
-    }
-
-    public void deleteLike(Long reviewId, Long userId) {
-        jdbcTemplate.update(DELETE_LIKE_QUERY, reviewId, userId);
-    }
-
-    public void deleteDislike(Long reviewId, Long userId) {
-        jdbcTemplate.update(DELETE_DISLIKE_QUERY, reviewId, userId);
-    }
-
-    // Проверка лайка
-    public boolean existsLike(Long reviewId, Long userId) {
-        try {
-            Integer result = jdbcTemplate.queryForObject(
-                    EXISTS_LIKE_QUERY,
-                    Integer.class,
-                    userId,
-                    reviewId
-            );
-            return result != 0;
-        } catch (EmptyResultDataAccessException e) {
-            return false;
+    // Оценка отзыва (1 или -1) вместе с полезностью в одной транзакции.
+    // false — пользователь уже поставил такую же оценку
+    @Transactional
+    public boolean vote(Long reviewId, Long userId, int vote) {
+        if (jdbcTemplate.update(VOTE_USEFUL_QUERY, vote, reviewId, userId, reviewId) == 0) {
+            throw new NotFoundException("Отзыв с id: " + reviewId + " не найден");
         }
+        return jdbcTemplate.update(VOTE_QUERY, reviewId, userId, vote) > 0;
     }
 
-    // Проверка дизлайка
-    public boolean existsDislike(Long reviewId, Long userId) {
-        try {
-            Integer result = jdbcTemplate.queryForObject(
-                    EXISTS_DISLIKE_QUERY,
-                    Integer.class,
-                    userId,
-                    reviewId
-            );
-            return result != 0;
-        } catch (EmptyResultDataAccessException e) {
-            return false;
-        }
+    // Снятие оценки; если такой оценки нет, ничего не меняется
+    @Transactional
+    public void removeVote(Long reviewId, Long userId, int vote) {
+        jdbcTemplate.update(REMOVE_VOTE_USEFUL_QUERY, reviewId, userId, vote, reviewId);
+        jdbcTemplate.update(REMOVE_VOTE_QUERY, reviewId, userId, vote);
     }
 
     // Обновление отзыва + запись в ленту событий
@@ -120,9 +100,8 @@ public class ReviewDbStorage {
         update(UPDATE_QUERY, review.getUserId(), review.getFilmId(), review.isPositive(), review.getContent(),
                 review.getId());
 
-        String feedQuery = "INSERT INTO feeds (user_id, timestamp, entity_id, event_type_id, event_operation_id) " +
-                "VALUES (?,?,?,?,?)";
-        update(feedQuery, review.getUserId(), Instant.now().toEpochMilli(), review.getId(), 2, 3);
+        feedPublisher.publish(FeedEvent.of(review.getUserId(), review.getId(), FeedEvent.Type.REVIEW,
+                FeedEvent.Operation.UPDATE));
 
         return review;
     }
@@ -133,9 +112,8 @@ public class ReviewDbStorage {
 
         if (review.isPresent()) {
             Review findReview = review.get();
-            String feedQuery = "INSERT INTO feeds (user_id, timestamp, entity_id, event_type_id, event_operation_id) " +
-                    "VALUES (?,?,?,?,?)";
-            update(feedQuery, findReview.getUserId(), Instant.now().toEpochMilli(), findReview.getId(), 2, 1);
+            feedPublisher.publish(FeedEvent.of(findReview.getUserId(), findReview.getId(), FeedEvent.Type.REVIEW,
+                    FeedEvent.Operation.REMOVE));
         }
 
         delete(DELETE_QUERY, reviewId);
@@ -152,14 +130,21 @@ public class ReviewDbStorage {
         }
     }
 
-    // Все отзывы
-    public Collection<Review> getAllReviews(int count) {
-        return jdbcTemplate.query(SELECT_ALL_QUERY, reviewRowMapper, count);
+    // Все отзывы; страница после курсора, если он задан
+    public Collection<Review> getAllReviews(Integer afterUseful, Long afterId, int count) {
+        if (afterId == null) {
+            return jdbcTemplate.query(SELECT_ALL_QUERY, reviewRowMapper, count);
+        }
+        return jdbcTemplate.query(SELECT_ALL_AFTER_QUERY, reviewRowMapper, afterUseful, afterUseful, afterId, count);
     }
 
-    // Отзывы по фильму
-    public Collection<Review> getAllReviewsByFilmId(Long filmId, int count) {
-        return jdbcTemplate.query(SELECT_ALL_BY_FILM_ID_QUERY, reviewRowMapper, filmId, count);
+    // Отзывы по фильму; страница после курсора, если он задан
+    public Collection<Review> getAllReviewsByFilmId(Long filmId, Integer afterUseful, Long afterId, int count) {
+        if (afterId == null) {
+            return jdbcTemplate.query(SELECT_ALL_BY_FILM_ID_QUERY, reviewRowMapper, filmId, count);
+        }
+        return jdbcTemplate.query(SELECT_ALL_BY_FILM_ID_AFTER_QUERY, reviewRowMapper, filmId, afterUseful, afterUseful,
+                afterId, count);
     }
 
     private long insert(String query, Object... params) {
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Одноразовые миграции файловых БД, созданных до изменения схемы.
+ * schema.sql выполняется при каждом старте и содержит только идемпотентные CREATE ... IF NOT EXISTS,
+ * а перенос данных запускается здесь и только если в БД ещё нет итоговой структуры.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SchemaMigrations {
+    private static final String TABLE_EXISTS = "SELECT COUNT(*) FROM information_schema.tables " +
+            "WHERE table_schema = 'PUBLIC' AND table_name = ?";
+    private static final String CONSTRAINT_EXISTS = "SELECT COUNT(*) FROM information_schema.table_constraints " +
+            "WHERE table_schema = 'PUBLIC' AND table_name = ? AND constraint_name = ?";
+
+    private final JdbcTemplate jdbc;
+
+    @PostConstruct
+    public void migrate() {
+        if (!constraintExists("LIKES", "PK_LIKES")) {
+            migrateLikes();
+        }
+        boolean reviewLikes = tableExists("REVIEW_LIKES");
+        boolean reviewDislikes = tableExists("REVIEW_DISLIKES");
+        if (reviewLikes || reviewDislikes) {
+            migrateReviewVotes(reviewLikes, reviewDislikes);
+        }
+    }
+
+    // Суррогатный id лайка заменяется ключом (film_id, user_id), повторные лайки удаляются.
+    // Ключ создаётся последним, поэтому прерванная миграция повторится при следующем старте.
+    private void migrateLikes() {
+        jdbc.update("DELETE FROM likes WHERE film_id IS NULL OR user_id IS NULL");
+        int duplicates = jdbc.update("DELETE FROM likes l WHERE EXISTS (SELECT 1 FROM likes d " +
+                "WHERE d.film_id = l.film_id AND d.user_id = l.user_id AND d._ROWID_ < l._ROWID_)");
+        jdbc.execute("ALTER TABLE likes DROP COLUMN IF EXISTS id");
+        jdbc.execute("ALTER TABLE likes ALTER COLUMN film_id SET NOT NULL");
+        jdbc.execute("ALTER TABLE likes ALTER COLUMN user_id SET NOT NULL");
+        jdbc.execute("ALTER TABLE likes ADD CONSTRAINT pk_likes PRIMARY KEY (film_id, user_id)");
+        log.info("Таблица likes переведена на ключ (film_id, user_id), удалено повторных лайков: {}.", duplicates);
+    }
+
+    // Оценки из review_likes и review_dislikes переносятся в review_votes, старые таблицы удаляются,
+    // полезность отзывов пересчитывается один раз в ходе миграции
+    private void migrateReviewVotes(boolean reviewLikes, boolean reviewDislikes) {
+        if (reviewLikes) {
+            jdbc.update("MERGE INTO review_votes (review_id, user_id, vote) KEY (review_id, user_id) " +
+                    "SELECT DISTINCT review_id, user_id, 1 FROM review_likes " +
+                    "WHERE review_id IS NOT NULL AND user_id IS NOT NULL");
+        }
+        if (reviewDislikes) {
+            jdbc.update("MERGE INTO review_votes (review_id, user_id, vote) KEY (review_id, user_id) " +
+                    "SELECT DISTINCT review_id, user_id, -1 FROM review_dislikes " +
+                    "WHERE review_id IS NOT NULL AND user_id IS NOT NULL");
+        }
+        int recomputed = jdbc.update("UPDATE reviews r " +
+                "SET useful = (SELECT COALESCE(SUM(v.vote), 0) FROM review_votes v WHERE v.review_id = r.id)");
+        jdbc.execute("DROP TABLE IF EXISTS review_likes");
+        jdbc.execute("DROP TABLE IF EXISTS review_dislikes");
+        log.info("Оценки отзывов перенесены в review_votes, полезность пересчитана у {} отзывов.", recomputed);
+    }
+
+    private boolean tableExists(String table) {
+        Integer count = jdbc.queryForObject(TABLE_EXISTS, Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    private boolean constraintExists(String table, String constraint) {
+        Integer count = jdbc.queryForObject(CONSTRAINT_EXISTS, Integer.class, table, constraint);
+        return count != null && count > 0;
+    }
+}
@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Счётчик SQL-обращений к БД в текущем потоке.
+ * Одно обращение — один execute*, пакет executeBatch считается одним обращением.
+ * Значения увеличивает DataSource, обёрнутый {@link StatementCountingDataSourceConfig}.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class StatementCounter {
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public static long get() {
+        return COUNT.get()[0];
+    }
+
+    static void increment() {
+        COUNT.get()[0]++;
+    }
+}
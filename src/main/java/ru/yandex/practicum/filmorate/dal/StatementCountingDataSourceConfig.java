@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Оборачивает DataSource так, чтобы каждое выполнение запроса учитывалось в {@link StatementCounter}.
+ * Включается свойством filmorate.sql.statement-counter.enabled=true, по умолчанию выключено:
+ * прокси на каждом Statement нужен только тестам и диагностике.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.sql.statement-counter.enabled", havingValue = "true")
+public class StatementCountingDataSourceConfig implements BeanPostProcessor {
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate",
+            "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof CountingDataSource)) {
+            return new CountingDataSource(dataSource);
+        }
+        return bean;
+    }
+
+    private static final class CountingDataSource extends DelegatingDataSource {
+        private CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return countingConnection(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return countingConnection(super.getConnection(username, password));
+        }
+    }
+
+    // Соединение, у которого выданные Statement считают свои выполнения
+    private static Connection countingConnection(Connection connection) {
+        return proxy(Connection.class, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (result instanceof CallableStatement statement) {
+                return countingStatement(CallableStatement.class, statement);
+            }
+            if (result instanceof PreparedStatement statement) {
+                return countingStatement(PreparedStatement.class, statement);
+            }
+            if (result instanceof Statement statement) {
+                return countingStatement(Statement.class, statement);
+            }
+            return result;
+        });
+    }
+
+    private static <T extends Statement> T countingStatement(Class<T> type, T statement) {
+        return proxy(type, (proxy, method, args) -> {
+            if (EXECUTE_METHODS.contains(method.getName())) {
+                StatementCounter.increment();
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
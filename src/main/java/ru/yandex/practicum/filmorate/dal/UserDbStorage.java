@@ -6,18 +6,29 @@ import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dal.mapper.UserRowMapper;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.feed.FeedEventPublisher;
+import ru.yandex.practicum.filmorate.index.AfterCommit;
+import ru.yandex.practicum.filmorate.index.ExistenceIndex;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
-import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
@@ -37,10 +48,40 @@ public class UserDbStorage implements UserStorage {
     private static final String FIND_BY_EMAIL_QUERY = "SELECT user_id AS id, name AS username, email, login, birthday " +
             "FROM users WHERE email = ?";
 
+    // Друзья загружаются одним запросом, постранично по возрастанию id начиная после afterId
+    private static final String FRIENDS_QUERY = "SELECT DISTINCT u.user_id AS id, u.name AS username, u.email, " +
+            "u.login, u.birthday FROM friends f JOIN users u ON u.user_id = f.friend_id " +
+            "WHERE f.user_id = ? AND f.friend_id > ? ORDER BY u.user_id";
+    private static final String SAME_FRIENDS_QUERY = "SELECT DISTINCT u.user_id AS id, u.name AS username, u.email, " +
+            "u.login, u.birthday FROM friends f " +
+            "JOIN friends o ON o.friend_id = f.friend_id AND o.user_id = ? " +
+            "JOIN users u ON u.user_id = f.friend_id " +
+            "WHERE f.user_id = ? AND f.friend_id > ? ORDER BY u.user_id";
+    // Пользователи по id из графа друзей: один параметр-массив вместо IN-списка
+    private static final String FIND_BY_IDS_QUERY = "SELECT user_id AS id, name AS username, email, login, birthday " +
+            "FROM users WHERE user_id = ANY(?)";
+
     private static final String EXISTS_QUERY = "SELECT 1 FROM users u WHERE u.user_id = ?";
 
+    // Лайки пользователя удаляются каскадно, поэтому счётчики фильмов уменьшаем заранее
+    private static final String USER_LIKES_QUERY = "SELECT film_id, COUNT(*) AS likes FROM likes " +
+            "WHERE user_id = ? GROUP BY film_id";
+    private static final String RELEASE_LIKES_COUNT_QUERY = "UPDATE films f " +
+            "SET likes_count = likes_count - (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id AND l.user_id = ?) " +
+            "WHERE f.film_id IN (SELECT film_id FROM likes WHERE user_id = ?)";
+    // Оценки отзывов удаляются каскадно, поэтому полезность отзывов пересчитываем заранее
+    private static final String RELEASE_REVIEW_VOTES_QUERY = "UPDATE reviews r " +
+            "SET useful = useful - (SELECT v.vote FROM review_votes v WHERE v.review_id = r.id AND v.user_id = ?) " +
+            "WHERE r.id IN (SELECT review_id FROM review_votes WHERE user_id = ?)";
+
     private final JdbcTemplate jdbc;
     private final UserRowMapper mapper;
+    private final PopularityLeaderboard leaderboard;
+    private final LikeIndex likeIndex;
+    private final FilmSuggestIndex suggestIndex;
+    private final FeedEventPublisher feedPublisher;
+    private final ExistenceIndex existenceIndex;
+    private final FriendGraph friendGraph;
 
     // Получение всех пользователей
     @Override
@@ -70,6 +111,7 @@ public class UserDbStorage implements UserStorage {
                 user.getBirthday()
         );
         user.setId(id);
+        AfterCommit.run(() -> existenceIndex.onUserSaved(id));
         return user;
     }
 
@@ -89,9 +131,25 @@ public class UserDbStorage implements UserStorage {
 
     // Удаление пользователя
     @Override
+    @Transactional
     public User deleteUser(User user) {
+        jdbc.query(USER_LIKES_QUERY, rs -> {
+            long filmId = rs.getLong("film_id");
+            long likes = rs.getLong("likes");
+            AfterCommit.run(() -> {
+                leaderboard.onLikesChanged(filmId, -likes);
+                suggestIndex.onLikesChanged(filmId, -likes);
+            });
+        }, user.getId());
+        jdbc.update(RELEASE_LIKES_COUNT_QUERY, user.getId(), user.getId());
+        jdbc.update(RELEASE_REVIEW_VOTES_QUERY, user.getId(), user.getId());
         delete(DELETE_QUERY,
                 user.getId());
+        AfterCommit.run(() -> {
+            likeIndex.onUserDeleted(user.getId());
+            existenceIndex.onUserDeleted(user.getId());
+            friendGraph.onUserDeleted(user.getId());
+        });
         return user;
     }
 
@@ -103,9 +161,9 @@ public class UserDbStorage implements UserStorage {
 
         String query = "INSERT INTO friends (user_id, friend_id) VALUES (?, ?)";
         update(query, userId, friendId);
+        AfterCommit.run(() -> friendGraph.onFriendAdded(userId, friendId));
 
-        String feedquery = "INSERT INTO feeds (user_id, timestamp, entity_id, event_type_id, event_operation_id) VALUES (?,?,?,?,?)";
-        update(feedquery, userId, Instant.now().toEpochMilli(), friendId, 3, 2);
+        feedPublisher.publish(FeedEvent.of(userId, friendId, FeedEvent.Type.FRIEND, FeedEvent.Operation.ADD));
     }
 
     // Подтверждение дружбы
@@ -116,16 +174,17 @@ public class UserDbStorage implements UserStorage {
         String query = "UPDATE friends SET friend_confirm = true WHERE user_id = ? AND friend_id = ?";
         update(query, userId, friendId);
 
-        String feedQuery = "INSERT INTO feeds (user_id, timestamp, entity_id, event_type_id, event_operation_id) VALUES (?,?,?,?,?)";
-        update(feedQuery, userId, Instant.now().toEpochMilli(), friendId, 3, 3);
+        feedPublisher.publish(FeedEvent.of(userId, friendId, FeedEvent.Type.FRIEND, FeedEvent.Operation.UPDATE));
     }
 
     // Список друзей
     @Override
-    public List<Optional<User>> getUserFriends(Long userId) {
+    public List<User> getUserFriends(Long userId, Long afterId, Integer limit) {
         existsUserById(userId);
-        String query = "SELECT friend_id FROM friends WHERE user_id = ?";
-        return jdbc.queryForList(query, Long.class, userId).stream().map(this::getUser).collect(Collectors.toList());
+        if (friendGraph.isReady()) {
+            return findByIds(friendGraph.friends(userId, afterId, limit));
+        }
+        return page(FRIENDS_QUERY, limit, userId, afterId == null ? 0 : afterId);
     }
 
     // Удаление из друзей
@@ -134,30 +193,36 @@ public class UserDbStorage implements UserStorage {
         existsUserById(userId);
         existsUserById(friendId);
 
-        String feedQuery = "INSERT INTO feeds (user_id, timestamp, entity_id, event_type_id, event_operation_id) VALUES (?,?,?,?,?)";
-        update(feedQuery, userId, Instant.now().toEpochMilli(), friendId, 3, 1);
+        feedPublisher.publish(FeedEvent.of(userId, friendId, FeedEvent.Type.FRIEND, FeedEvent.Operation.REMOVE));
 
         String query = "DELETE FROM friends WHERE user_id = ? AND friend_id = ?";
         jdbc.update(query, userId, friendId);
-
+        AfterCommit.run(() -> friendGraph.onFriendRemoved(userId, friendId));
     }
 
     // Общие друзья
     @Override
-    public List<Optional<User>> getSameFriends(Long userId, Long otherId) {
+    public List<User> getSameFriends(Long userId, Long otherId, Long afterId, Integer limit) {
         existsUserById(userId);
         existsUserById(otherId);
-        String query = "SELECT friend_id FROM friends WHERE user_id = ? AND friend_id IN (SELECT friend_id FROM friends WHERE user_id = ?)";
-        return jdbc.queryForList(query, Long.class, userId, otherId).stream().map(friendId -> getUser(friendId)).collect(Collectors.toList());
+        if (friendGraph.isReady()) {
+            return findByIds(friendGraph.commonFriends(userId, otherId, afterId, limit));
+        }
+        return page(SAME_FRIENDS_QUERY, limit, otherId, userId, afterId == null ? 0 : afterId);
     }
 
     @Override
     public void existsUserById(Long userId) {
-        User user = getUser(userId).orElseThrow(() -> new NotFoundException("Пользователь с ID " +
-                userId + " не найден."));
+        if (!exists(userId)) {
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден.");
+        }
     }
 
+    // Сначала индекс в памяти; если id там нет, решает БД
     public boolean exists(Long userId) {
+        if (existenceIndex.containsUser(userId)) {
+            return true;
+        }
         try {
             Integer result = jdbc.queryForObject(
                     EXISTS_QUERY,
@@ -199,6 +264,26 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
+    // Пользователи в порядке переданных id; удалённые к этому моменту пропускаются
+    private List<User> findByIds(int[] ids) {
+        List<Long> userIds = Arrays.stream(ids).mapToObj(id -> (long) id).toList();
+        Map<Long, User> users = new HashMap<>();
+        IdArrayLookup.query(jdbc, FIND_BY_IDS_QUERY, userIds, rs -> {
+            User user = mapper.mapRow(rs, rs.getRow());
+            users.put(user.getId(), user);
+        });
+        return userIds.stream().map(users::get).filter(Objects::nonNull).toList();
+    }
+
+    private List<User> page(String query, Integer limit, Object... params) {
+        if (limit == null) {
+            return jdbc.query(query, mapper, params);
+        }
+        Object[] pageParams = Arrays.copyOf(params, params.length + 1);
+        pageParams[params.length] = limit;
+        return jdbc.query(query + " LIMIT ?", mapper, pageParams);
+    }
+
     private void update(String query, Object... params) {
         int rowsUpdated = jdbc.update(query, params);
         if (rowsUpdated == 0) {
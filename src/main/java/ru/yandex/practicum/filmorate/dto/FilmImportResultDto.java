@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FilmImportResultDto {
+    public static final String CREATED = "created";
+    public static final String FAILED = "failed";
+
+    private int index;
+
+    private String status;
+
+    private Long id;
+
+    private String error;
+}
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Data;
+
+@Data
+public class FilmSuggestionDto {
+    private String type;
+
+    private Long id;
+
+    private String text;
+}
@@ -0,0 +1,226 @@
+package ru.yandex.practicum.filmorate.feed;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.AfterCommit;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Публикация событий ленты. Хранилища передают типизированные события, а способ записи в feeds задаёт
+ * filmorate.feed.mode:
+ * sync — в транзакции изменения, как раньше;
+ * async — после фиксации в ограниченный кольцевой буфер, откуда фоновый поток пишет пакетами;
+ * при переполнении запись выполняется в потоке вызова;
+ * outbox — в таблицу feed_outbox в транзакции изменения, фоновый поток переносит их в feeds пакетами.
+ * Перед чтением ленты вызывается flush(), чтобы пользователь видел свои события.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FeedEventPublisher {
+
+    public enum Mode { SYNC, ASYNC, OUTBOX }
+
+    private final FeedStorage feedStorage;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${filmorate.feed.mode:sync}")
+    private String modeName;
+
+    @Value("${filmorate.feed.capacity:8192}")
+    private int capacity;
+
+    @Value("${filmorate.feed.batch-size:500}")
+    private int batchSize;
+
+    @Value("${filmorate.feed.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final AtomicLong outboxPending = new AtomicLong();
+    private Mode mode;
+    private ArrayBlockingQueue<FeedEvent> queue;
+    private Timer flushTimer;
+    private Counter writtenCounter;
+    private Counter overflowCounter;
+    private Counter droppedCounter;
+    private Thread writer;
+    private volatile boolean closed;
+
+    @PostConstruct
+    public void init() {
+        mode = Mode.valueOf(modeName.trim().toUpperCase(Locale.ROOT));
+        queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+        String modeTag = mode.name().toLowerCase(Locale.ROOT);
+        Gauge.builder("filmorate.feed.queue.depth", () -> queue.size() + outboxPending.get())
+                .description("События ленты, ожидающие записи в feeds")
+                .tag("mode", modeTag)
+                .register(registry);
+        flushTimer = Timer.builder("filmorate.feed.flush")
+                .description("Время записи пакета событий в feeds")
+                .tag("mode", modeTag)
+                .register(registry);
+        writtenCounter = registry.counter("filmorate.feed.events.written", "mode", modeTag);
+        overflowCounter = registry.counter("filmorate.feed.events.overflow", "mode", modeTag);
+        droppedCounter = registry.counter("filmorate.feed.events.dropped", "mode", modeTag);
+        if (mode != Mode.SYNC) {
+            writer = Thread.ofPlatform().name("feed-writer").daemon().start(this::runWriter);
+        }
+        log.info("Лента событий: режим {}.", modeTag);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void publish(FeedEvent event) {
+        publish(List.of(event));
+    }
+
+    public void publish(List<FeedEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        if (closed || mode == Mode.SYNC) {
+            feedStorage.addEvents(events);
+            return;
+        }
+        if (mode == Mode.OUTBOX) {
+            feedStorage.addToOutbox(events);
+            AfterCommit.run(() -> {
+                if (outboxPending.addAndGet(events.size()) >= batchSize) {
+                    LockSupport.unpark(writer);
+                }
+            });
+            return;
+        }
+        // в буфер попадают только события зафиксированных изменений
+        AfterCommit.run(() -> enqueue(events));
+    }
+
+    // Дожидается записи всех опубликованных событий в feeds
+    public void flush() {
+        if (mode != Mode.SYNC) {
+            drain(true);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        closed = true;
+        if (writer != null) {
+            // без interrupt: прерывание потока во время записи закрывает файловую БД H2
+            LockSupport.unpark(writer);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    private void enqueue(List<FeedEvent> events) {
+        for (FeedEvent event : events) {
+            // буфер полон: вызывающий поток сам записывает накопленное, порядок событий сохраняется
+            while (!queue.offer(event)) {
+                overflowCounter.increment();
+                drain(false);
+            }
+        }
+        if (queue.size() >= batchSize) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void runWriter() {
+        if (mode == Mode.OUTBOX) {
+            outboxPending.set(feedStorage.countOutbox());
+        }
+        while (!closed) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMs));
+            try {
+                drain(false);
+            } catch (RuntimeException e) {
+                log.error("Не удалось записать события ленты: {}", e.getMessage());
+            }
+        }
+    }
+
+    // force — перенести outbox, даже если счётчик ожидающих событий пуст
+    private void drain(boolean force) {
+        writeLock.lock();
+        try {
+            if (mode == Mode.OUTBOX) {
+                while ((force || outboxPending.get() > 0) && relay() >= batchSize) {
+                    log.debug("Перенос событий ленты из outbox продолжается.");
+                }
+                return;
+            }
+            List<FeedEvent> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                write(batch);
+                batch.clear();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private int relay() {
+        long start = System.nanoTime();
+        int relayed = feedStorage.relayOutbox(batchSize);
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (relayed == 0) {
+            outboxPending.set(0);
+        } else {
+            outboxPending.updateAndGet(pending -> Math.max(0, pending - relayed));
+        }
+        writtenCounter.increment(relayed);
+        return relayed;
+    }
+
+    private void write(List<FeedEvent> batch) {
+        long start = System.nanoTime();
+        try {
+            feedStorage.addEvents(batch);
+            writtenCounter.increment(batch.size());
+        } catch (DataAccessException e) {
+            // пакет откатился целиком (например, пользователь удалён): события записываются по одному
+            log.warn("Пакет из {} событий ленты не записан, запись по одному: {}", batch.size(), e.getMessage());
+            for (FeedEvent event : batch) {
+                try {
+                    feedStorage.addEvents(List.of(event));
+                    writtenCounter.increment();
+                } catch (DataAccessException ex) {
+                    droppedCounter.increment();
+                    log.warn("Событие ленты {} отброшено: {}", event, ex.getMessage());
+                }
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
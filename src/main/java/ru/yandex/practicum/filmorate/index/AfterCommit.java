@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class AfterCommit {
+
+    // Выполняет действие после фиксации текущей транзакции, а вне транзакции — сразу.
+    // Так индексы в памяти не видят изменений, которые затем были откатены.
+    public static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,157 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Множества существующих id пользователей и фильмов в памяти: по одному биту на значение identity-ключа.
+ * Чтение без блокировок, изменения и загрузка — под общей блокировкой, поэтому создание, зафиксированное
+ * во время загрузки, не теряется. Индекс отвечает только «точно есть»: при отсутствии бита хранилище
+ * проверяет БД, так что строки, вставленные в текущей транзакции, тоже находятся.
+ * Биты ставятся и снимаются после фиксации транзакции.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExistenceIndex {
+    private static final String USERS_QUERY = "SELECT user_id FROM users";
+    private static final String FILMS_QUERY = "SELECT film_id FROM films";
+
+    private final JdbcTemplate jdbc;
+
+    @Value("${filmorate.existence-index.enabled:true}")
+    private boolean enabled;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final IdSet users = new IdSet();
+    private final IdSet films = new IdSet();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            load();
+        }
+    }
+
+    // Полная загрузка id из БД
+    public void load() {
+        lock.lock();
+        try {
+            users.clear();
+            films.clear();
+            jdbc.query(USERS_QUERY, rs -> {
+                users.add(rs.getLong("user_id"));
+            });
+            jdbc.query(FILMS_QUERY, rs -> {
+                films.add(rs.getLong("film_id"));
+            });
+            ready = true;
+            log.info("Индекс существования загружен: {} пользователей, {} фильмов.", users.count(), films.count());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean containsUser(Long userId) {
+        return ready && users.contains(userId);
+    }
+
+    public boolean containsFilm(Long filmId) {
+        return ready && films.contains(filmId);
+    }
+
+    public void onUserSaved(Long userId) {
+        change(users, userId, true);
+    }
+
+    public void onUserDeleted(Long userId) {
+        change(users, userId, false);
+    }
+
+    public void onFilmSaved(Long filmId) {
+        change(films, filmId, true);
+    }
+
+    public void onFilmDeleted(Long filmId) {
+        change(films, filmId, false);
+    }
+
+    // Изменение ждёт окончания загрузки, поэтому не теряется, даже если запрос загрузки его не увидел
+    private void change(IdSet set, Long id, boolean present) {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (present) {
+                set.add(id);
+            } else {
+                set.remove(id);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Растущее битовое множество: читатели видят массив через volatile-ссылку, писатели работают под блокировкой
+    private static final class IdSet {
+        private volatile AtomicLongArray words = new AtomicLongArray(64);
+
+        boolean contains(Long id) {
+            if (id == null || id < 0 || id > Integer.MAX_VALUE) {
+                return false;
+            }
+            AtomicLongArray current = words;
+            int word = (int) (id >>> 6);
+            return word < current.length() && (current.get(word) & (1L << id)) != 0;
+        }
+
+        void add(long id) {
+            int word = Math.toIntExact(id) >>> 6;
+            AtomicLongArray current = words;
+            if (word >= current.length()) {
+                AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                words = grown;
+                current = grown;
+            }
+            current.set(word, current.get(word) | (1L << id));
+        }
+
+        void remove(long id) {
+            AtomicLongArray current = words;
+            int word = (int) (id >>> 6);
+            if (id >= 0 && word < current.length()) {
+                current.set(word, current.get(word) & ~(1L << id));
+            }
+        }
+
+        void clear() {
+            words = new AtomicLongArray(64);
+        }
+
+        int count() {
+            AtomicLongArray current = words;
+            int count = 0;
+            for (int i = 0; i < current.length(); i++) {
+                count += Long.bitCount(current.get(i));
+            }
+            return count;
+        }
+    }
+}
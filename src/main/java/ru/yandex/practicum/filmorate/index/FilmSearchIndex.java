@@ -0,0 +1,273 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Триграммный инвертированный индекс по названиям фильмов и именам режиссёров.
+ * Кандидаты находятся пересечением списков триграмм запроса и затем проверяются на вхождение подстроки,
+ * поэтому результат совпадает с LOWER(...) LIKE '%query%'.
+ * Готовность проверяется под блокировкой записи: фильм или режиссёр, сохранённый во время load(),
+ * ждёт окончания загрузки и попадает в индекс. Изменения заменяют запись целиком и повторно безопасны.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSearchIndex {
+    private static final int GRAM = 3;
+
+    private final JdbcTemplate jdbc;
+
+    @Value("${filmorate.search-index.enabled:true}")
+    private boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, String> titles = new HashMap<>();
+    private final Map<Integer, String> directorNames = new HashMap<>();
+    private final Map<Integer, Set<Integer>> directorsByFilm = new HashMap<>();
+    private final Map<Integer, BitSet> filmsByDirector = new HashMap<>();
+    private final Map<String, BitSet> titleGrams = new HashMap<>();
+    private final Map<String, BitSet> directorGrams = new HashMap<>();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            load();
+        }
+    }
+
+    // Полное построение индекса по данным БД
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            titles.clear();
+            directorNames.clear();
+            directorsByFilm.clear();
+            filmsByDirector.clear();
+            titleGrams.clear();
+            directorGrams.clear();
+            jdbc.query("SELECT film_id, title FROM films", rs -> {
+                putTitle(Math.toIntExact(rs.getLong("film_id")), rs.getString("title"));
+            });
+            jdbc.query("SELECT id, name FROM directors", rs -> {
+                putDirector(Math.toIntExact(rs.getLong("id")), rs.getString("name"));
+            });
+            jdbc.query("SELECT film_id, director_id FROM film_director", rs -> {
+                link(Math.toIntExact(rs.getLong("film_id")), Math.toIntExact(rs.getLong("director_id")));
+            });
+            ready = true;
+            log.info("Поисковый индекс построен: {} фильмов, {} режиссёров, {} триграмм.",
+                    titles.size(), directorNames.size(), titleGrams.size() + directorGrams.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Поиск фильмов по подстроке в названии и/или имени режиссёра
+    public Set<Long> search(String query, List<String> by) {
+        String needle = normalize(query);
+        lock.readLock().lock();
+        try {
+            BitSet found = new BitSet();
+            if (by.contains("title")) {
+                found.or(match(needle, titleGrams, titles));
+            }
+            if (by.contains("director")) {
+                BitSet directors = match(needle, directorGrams, directorNames);
+                directors.stream()
+                        .mapToObj(filmsByDirector::get)
+                        .filter(Objects::nonNull)
+                        .forEach(found::or);
+            }
+            return found.stream().mapToObj(Long::valueOf).collect(Collectors.toSet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void onFilmSaved(Film film) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            int filmId = Math.toIntExact(film.getId());
+            removeFilm(filmId);
+            putTitle(filmId, film.getName());
+            if (film.getDirectors() != null) {
+                for (Director director : film.getDirectors()) {
+                    link(filmId, Math.toIntExact(director.getId()));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onFilmDeleted(Long filmId) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            removeFilm(Math.toIntExact(filmId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onDirectorSaved(Director director) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            int directorId = Math.toIntExact(director.getId());
+            removeGrams(directorGrams, directorNames.remove(directorId), directorId);
+            putDirector(directorId, director.getName());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onDirectorDeleted(Long directorId) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            int id = Math.toIntExact(directorId);
+            removeGrams(directorGrams, directorNames.remove(id), id);
+            BitSet films = filmsByDirector.remove(id);
+            if (films != null) {
+                films.stream().forEach(filmId -> {
+                    Set<Integer> directors = directorsByFilm.get(filmId);
+                    if (directors != null) {
+                        directors.remove(id);
+                    }
+                });
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Все сущности, текст которых содержит needle
+    private BitSet match(String needle, Map<String, BitSet> grams, Map<Integer, String> texts) {
+        BitSet result = new BitSet();
+        if (needle.length() < GRAM) {
+            texts.forEach((id, text) -> {
+                if (text.contains(needle)) {
+                    result.set(id);
+                }
+            });
+            return result;
+        }
+        boolean first = true;
+        for (String gram : grams(needle)) {
+            BitSet posting = grams.get(gram);
+            if (posting == null) {
+                return new BitSet();
+            }
+            if (first) {
+                result.or(posting);
+                first = false;
+            } else {
+                result.and(posting);
+            }
+        }
+        for (int id = result.nextSetBit(0); id >= 0; id = result.nextSetBit(id + 1)) {
+            if (!texts.get(id).contains(needle)) {
+                result.clear(id);
+            }
+        }
+        return result;
+    }
+
+    private void putTitle(int filmId, String title) {
+        String text = normalize(title);
+        titles.put(filmId, text);
+        addGrams(titleGrams, text, filmId);
+    }
+
+    private void putDirector(int directorId, String name) {
+        String text = normalize(name);
+        directorNames.put(directorId, text);
+        addGrams(directorGrams, text, directorId);
+    }
+
+    private void link(int filmId, int directorId) {
+        directorsByFilm.computeIfAbsent(filmId, id -> new HashSet<>()).add(directorId);
+        filmsByDirector.computeIfAbsent(directorId, id -> new BitSet()).set(filmId);
+    }
+
+    private void removeFilm(int filmId) {
+        removeGrams(titleGrams, titles.remove(filmId), filmId);
+        Set<Integer> directors = directorsByFilm.remove(filmId);
+        if (directors != null) {
+            for (Integer directorId : directors) {
+                BitSet films = filmsByDirector.get(directorId);
+                if (films != null) {
+                    films.clear(filmId);
+                }
+            }
+        }
+    }
+
+    private static void addGrams(Map<String, BitSet> grams, String text, int id) {
+        for (String gram : grams(text)) {
+            grams.computeIfAbsent(gram, g -> new BitSet()).set(id);
+        }
+    }
+
+    private static void removeGrams(Map<String, BitSet> grams, String text, int id) {
+        if (text == null) {
+            return;
+        }
+        for (String gram : grams(text)) {
+            BitSet posting = grams.get(gram);
+            if (posting != null) {
+                posting.clear(id);
+                if (posting.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            result.add(text.substring(i, i + GRAM));
+        }
+        return result;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+}
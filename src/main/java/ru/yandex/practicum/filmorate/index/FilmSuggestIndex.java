@@ -0,0 +1,548 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.FilmSuggestionDto;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Сжатое префиксное дерево (radix) для подсказок при вводе по названиям фильмов и именам режиссёров.
+ * Ключи — нормализованный текст с начала каждого слова, поэтому "kni" находит "The Dark Knight".
+ * Узлы заводятся только в точках ветвления и на концах ключей, ребро хранит строку, а дети узла лежат
+ * в отсортированном массиве по первому символу ребра. Ключи завершений не хранятся и вычисляются из текста.
+ * Каждый узел хранит top-K завершений своего поддерева по популярности, и ответ не требует обхода поддерева.
+ * Популярность фильма — число лайков, режиссёра — сумма лайков его фильмов.
+ * Лайки не берут блокировку дерева: изменения популярности копятся и применяются пачкой
+ * раз в filmorate.suggest.refresh-interval-ms. Остальные изменения проверяют готовность под блокировкой записи
+ * и, пришедшие во время load(), применяются после неё.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSuggestIndex {
+    public static final String FILM = "film";
+    public static final String DIRECTOR = "director";
+
+    private static final Comparator<Completion> ORDER = Comparator.comparingLong((Completion c) -> c.score).reversed()
+            .thenComparing(c -> c.kind)
+            .thenComparingLong(c -> c.id);
+
+    private final JdbcTemplate jdbc;
+
+    @Value("${filmorate.suggest.enabled:true}")
+    private boolean enabled;
+
+    @Value("${filmorate.suggest.top-k:10}")
+    private int topK;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node("");
+    private final Map<Long, Completion> films = new HashMap<>();
+    private final Map<Long, Completion> directors = new HashMap<>();
+    private final Map<Long, Set<Long>> directorsByFilm = new HashMap<>();
+    private final Map<Long, Set<Long>> filmsByDirector = new HashMap<>();
+    private final Map<Long, Long> pendingScores = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    // Загрузка раньше стартовой сверки счётчиков лайков в LikesCountReconciliationJob
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onApplicationReady() {
+        if (enabled) {
+            load();
+        }
+    }
+
+    // Полное построение дерева по данным БД. Накопленные изменения популярности отбрасываются:
+    // их транзакции уже закоммичены, и запрос видит их в films.likes_count
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            pendingScores.clear();
+            root.clear();
+            films.clear();
+            directors.clear();
+            directorsByFilm.clear();
+            filmsByDirector.clear();
+            jdbc.query("SELECT film_id, title, likes_count FROM films", rs -> {
+                long filmId = rs.getLong("film_id");
+                films.put(filmId, new Completion(FILM, filmId, rs.getString("title"), rs.getLong("likes_count")));
+            });
+            jdbc.query("SELECT id, name FROM directors", rs -> {
+                long directorId = rs.getLong("id");
+                directors.put(directorId, new Completion(DIRECTOR, directorId, rs.getString("name"), 0));
+            });
+            jdbc.query("SELECT film_id, director_id FROM film_director", rs -> {
+                link(rs.getLong("film_id"), rs.getLong("director_id"));
+            });
+            directors.values().forEach(director -> director.score = directorScore(director.id));
+            films.values().forEach(this::insertKeys);
+            directors.values().forEach(this::insertKeys);
+            recomputeAll(root);
+            ready = true;
+            log.info("Дерево подсказок построено: {} фильмов, {} режиссёров.", films.size(), directors.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Подсказки для префикса в порядке популярности; префикс без букв и цифр ничего не находит
+    public List<FilmSuggestionDto> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int matched = 0;
+            while (matched < key.length()) {
+                Node child = node.child(key.charAt(matched));
+                if (child == null) {
+                    return Collections.emptyList();
+                }
+                int common = child.commonPrefix(key, matched);
+                if (common < child.label.length() && matched + common < key.length()) {
+                    return Collections.emptyList();
+                }
+                node = child;
+                matched += common;
+            }
+            return node.top.stream()
+                    .limit(Math.min(limit, topK))
+                    .map(Completion::toDto)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void onFilmSaved(Film film) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            Completion old = films.get(film.getId());
+            long likes = old != null ? old.score : 0;
+            Set<Long> touchedDirectors = unlinkFilm(film.getId());
+            if (old != null) {
+                removeKeys(old);
+            }
+            Completion completion = new Completion(FILM, film.getId(), film.getName(), likes);
+            films.put(film.getId(), completion);
+            insertKeys(completion);
+            refreshKeys(completion);
+            if (film.getDirectors() != null) {
+                for (Director director : film.getDirectors()) {
+                    link(film.getId(), director.getId());
+                    touchedDirectors.add(director.getId());
+                }
+            }
+            touchedDirectors.forEach(this::rescoreDirector);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onFilmDeleted(Long filmId) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            Completion old = films.remove(filmId);
+            if (old != null) {
+                removeKeys(old);
+            }
+            unlinkFilm(filmId).forEach(this::rescoreDirector);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Изменение популярности копится без блокировки и применяется к дереву в refreshScores()
+    public void onLikesChanged(Long filmId, long delta) {
+        if (delta != 0) {
+            pendingScores.merge(filmId, delta, Long::sum);
+        }
+    }
+
+    // Применяет накопленные изменения популярности: top-K пересчитывается один раз на фильм и режиссёра за пачку
+    @Scheduled(fixedDelayString = "${filmorate.suggest.refresh-interval-ms:200}")
+    public void refreshScores() {
+        if (pendingScores.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Set<Long> touchedDirectors = new HashSet<>();
+            for (Long filmId : List.copyOf(pendingScores.keySet())) {
+                Long delta = pendingScores.remove(filmId);
+                Completion film = ready ? films.get(filmId) : null;
+                if (delta == null || film == null) {
+                    continue;
+                }
+                film.score = Math.max(0, film.score + delta);
+                refreshKeys(film);
+                touchedDirectors.addAll(directorsByFilm.getOrDefault(filmId, Set.of()));
+            }
+            touchedDirectors.forEach(this::rescoreDirector);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onDirectorSaved(Director director) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            Completion old = directors.get(director.getId());
+            if (old != null) {
+                removeKeys(old);
+            }
+            Completion completion = new Completion(DIRECTOR, director.getId(), director.getName(),
+                    directorScore(director.getId()));
+            directors.put(director.getId(), completion);
+            insertKeys(completion);
+            refreshKeys(completion);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onDirectorDeleted(Long directorId) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            Completion old = directors.remove(directorId);
+            if (old != null) {
+                removeKeys(old);
+            }
+            Set<Long> linkedFilms = filmsByDirector.remove(directorId);
+            if (linkedFilms != null) {
+                linkedFilms.forEach(filmId -> directorsByFilm.getOrDefault(filmId, new HashSet<>()).remove(directorId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void link(Long filmId, Long directorId) {
+        directorsByFilm.computeIfAbsent(filmId, id -> new HashSet<>()).add(directorId);
+        filmsByDirector.computeIfAbsent(directorId, id -> new HashSet<>()).add(filmId);
+    }
+
+    // Отвязывает фильм от режиссёров и возвращает их идентификаторы
+    private Set<Long> unlinkFilm(Long filmId) {
+        Set<Long> linked = directorsByFilm.remove(filmId);
+        if (linked == null) {
+            return new HashSet<>();
+        }
+        linked.forEach(directorId -> filmsByDirector.getOrDefault(directorId, new HashSet<>()).remove(filmId));
+        return linked;
+    }
+
+    private long directorScore(Long directorId) {
+        return filmsByDirector.getOrDefault(directorId, Set.of()).stream()
+                .map(films::get)
+                .filter(film -> film != null)
+                .mapToLong(film -> film.score)
+                .sum();
+    }
+
+    private void rescoreDirector(Long directorId) {
+        Completion director = directors.get(directorId);
+        if (director == null) {
+            return;
+        }
+        long score = directorScore(directorId);
+        if (score != director.score) {
+            director.score = score;
+            refreshKeys(director);
+        }
+    }
+
+    // Вставка ключей: при расхождении внутри ребра оно делится промежуточным узлом
+    private void insertKeys(Completion completion) {
+        for (String key : completion.keys()) {
+            Node node = root;
+            int matched = 0;
+            while (matched < key.length()) {
+                Node child = node.child(key.charAt(matched));
+                if (child == null) {
+                    child = new Node(key.substring(matched));
+                    node.addChild(child);
+                    matched = key.length();
+                } else {
+                    int common = child.commonPrefix(key, matched);
+                    if (common < child.label.length()) {
+                        Node middle = new Node(child.label.substring(0, common));
+                        node.replaceChild(middle);
+                        child.label = child.label.substring(common);
+                        middle.addChild(child);
+                        middle.top = child.top;
+                        child = middle;
+                    }
+                    matched += common;
+                }
+                node = child;
+            }
+            node.addCompletion(completion);
+        }
+    }
+
+    private void removeKeys(Completion completion) {
+        for (String key : completion.keys()) {
+            List<Node> path = path(key);
+            path.get(path.size() - 1).removeCompletion(completion);
+            recomputePath(path);
+        }
+    }
+
+    // Пересчитывает top-K на путях ключей после изменения популярности
+    private void refreshKeys(Completion completion) {
+        for (String key : completion.keys()) {
+            recomputePath(path(key));
+        }
+    }
+
+    // Узлы, рёбра которых целиком совпадают с началом ключа
+    private List<Node> path(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int matched = 0;
+        while (matched < key.length()) {
+            node = node.child(key.charAt(matched));
+            if (node == null || node.commonPrefix(key, matched) < node.label.length()) {
+                break;
+            }
+            path.add(node);
+            matched += node.label.length();
+        }
+        return path;
+    }
+
+    // Снизу вверх: top-K узла собирается из собственных завершений и top-K детей.
+    // Пустые узлы удаляются, узел без завершений с единственным ребёнком сливается с ним
+    private void recomputePath(List<Node> path) {
+        for (int depth = path.size() - 1; depth > 0; depth--) {
+            Node node = path.get(depth);
+            Node parent = path.get(depth - 1);
+            recompute(node);
+            if (node.completions.isEmpty() && node.children.length == 0) {
+                parent.removeChild(node.label.charAt(0));
+            } else if (node.completions.isEmpty() && node.children.length == 1) {
+                Node child = node.children[0];
+                child.label = node.label + child.label;
+                parent.replaceChild(child);
+            }
+        }
+        recompute(root);
+    }
+
+    private void recomputeAll(Node node) {
+        for (Node child : node.children) {
+            recomputeAll(child);
+        }
+        recompute(node);
+    }
+
+    private void recompute(Node node) {
+        Set<Completion> candidates = new LinkedHashSet<>(node.completions);
+        for (Node child : node.children) {
+            candidates.addAll(child.top);
+        }
+        List<Completion> top = new ArrayList<>(candidates);
+        top.sort(ORDER);
+        node.top = top.size() > topK ? List.copyOf(top.subList(0, topK)) : List.copyOf(top);
+    }
+
+    // Нижний регистр и одиночные пробелы вместо знаков препинания и повторных пробелов
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder result = new StringBuilder(text.length());
+        for (char c : text.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                result.append(c == 'ё' ? 'е' : c);
+            } else if (!result.isEmpty() && result.charAt(result.length() - 1) != ' ') {
+                result.append(' ');
+            }
+        }
+        int end = result.length();
+        return end > 0 && result.charAt(end - 1) == ' ' ? result.substring(0, end - 1) : result.toString();
+    }
+
+    // Ключи текста: суффиксы, начинающиеся с каждого слова
+    private static Set<String> keys(String text) {
+        String normalized = normalize(text);
+        Set<String> keys = new LinkedHashSet<>();
+        if (normalized.isEmpty()) {
+            return keys;
+        }
+        keys.add(normalized);
+        for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+            keys.add(normalized.substring(i + 1));
+        }
+        return keys;
+    }
+
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private String label;
+        private Node[] children = NO_CHILDREN;
+        private List<Completion> completions = List.of();
+        private List<Completion> top = List.of();
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private void clear() {
+            children = NO_CHILDREN;
+            completions = List.of();
+            top = List.of();
+        }
+
+        // Длина общего начала ребра и ключа с позиции from
+        private int commonPrefix(String key, int from) {
+            int max = Math.min(label.length(), key.length() - from);
+            int common = 0;
+            while (common < max && label.charAt(common) == key.charAt(from + common)) {
+                common++;
+            }
+            return common;
+        }
+
+        private Node child(char first) {
+            int index = indexOf(first);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private void addChild(Node child) {
+            int index = -indexOf(child.label.charAt(0)) - 1;
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, index);
+            grown[index] = child;
+            System.arraycopy(children, index, grown, index + 1, children.length - index);
+            children = grown;
+        }
+
+        // Замена ребёнка с тем же первым символом ребра
+        private void replaceChild(Node child) {
+            children[indexOf(child.label.charAt(0))] = child;
+        }
+
+        private void removeChild(char first) {
+            int index = indexOf(first);
+            if (index < 0) {
+                return;
+            }
+            Node[] shrunk = new Node[children.length - 1];
+            System.arraycopy(children, 0, shrunk, 0, index);
+            System.arraycopy(children, index + 1, shrunk, index, shrunk.length - index);
+            children = shrunk.length == 0 ? NO_CHILDREN : shrunk;
+        }
+
+        // Двоичный поиск по первому символу ребра: индекс или -(точка вставки) - 1
+        private int indexOf(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char c = children[mid].label.charAt(0);
+                if (c < first) {
+                    low = mid + 1;
+                } else if (c > first) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -low - 1;
+        }
+
+        private void addCompletion(Completion completion) {
+            if (completions.contains(completion)) {
+                return;
+            }
+            List<Completion> grown = new ArrayList<>(completions.size() + 1);
+            grown.addAll(completions);
+            grown.add(completion);
+            completions = grown;
+        }
+
+        private void removeCompletion(Completion completion) {
+            if (completions.contains(completion)) {
+                List<Completion> shrunk = new ArrayList<>(completions);
+                shrunk.remove(completion);
+                completions = shrunk.isEmpty() ? List.of() : shrunk;
+            }
+        }
+    }
+
+    private static final class Completion {
+        private final String kind;
+        private final long id;
+        private final String text;
+        private long score;
+
+        private Completion(String kind, long id, String text, long score) {
+            this.kind = kind;
+            this.id = id;
+            this.text = text;
+            this.score = score;
+        }
+
+        private Set<String> keys() {
+            return FilmSuggestIndex.keys(text);
+        }
+
+        private FilmSuggestionDto toDto() {
+            FilmSuggestionDto dto = new FilmSuggestionDto();
+            dto.setType(kind);
+            dto.setId(id);
+            dto.setText(text);
+            return dto;
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package ru.yandex.practicum.filmorate.index;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Граф дружбы в памяти. Основа — сжатые строки (CSR): для пользователя u его друзья лежат в neighbours
+ * с offsets[u] по offsets[u + 1], по возрастанию id. Основа неизменяема и заменяется целиком.
+ * Свежие изменения копятся в небольшой дельте: добавленные и удалённые рёбра по пользователям
+ * и удалённые пользователи. Ребро входит либо в добавленные, либо в удалённые, но не в оба множества сразу.
+ * Периодическое сжатие строит новую основу из снимка дельты вне блокировки и вычитает из дельты
+ * то, что попало в основу. Дубликаты строк friends сводятся к одному ребру, подтверждение дружбы
+ * на списки друзей не влияет. Общие друзья — пересечение двух отсортированных списков слиянием.
+ * Изменения применяются под блокировкой записи, которую загрузка держит на всё время запроса, поэтому
+ * дружба, зафиксированная во время загрузки, не теряется. Сжатие переносит только дельту, поэтому
+ * периодическая сверка заново строит основу из БД вне блокировки; изменения, пришедшие за время её запроса,
+ * копятся отдельно и становятся новой дельтой. Повтор уже учтённого изменения ничего не меняет.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FriendGraph {
+    private static final String LOAD_QUERY = "SELECT DISTINCT user_id, friend_id FROM friends " +
+            "ORDER BY user_id, friend_id";
+    private static final int[] EMPTY = new int[0];
+    // Приблизительная стоимость элемента TreeSet<Integer> и записи HashMap в байтах
+    private static final int DELTA_ENTRY_BYTES = 56;
+
+    private final JdbcTemplate jdbc;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${filmorate.friends-graph.enabled:true}")
+    private boolean enabled;
+
+    @Value("${filmorate.friends-graph.compaction-threshold:10000}")
+    private int compactionThreshold;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Base base = new Base(new int[]{0}, EMPTY);
+    private Delta delta = new Delta();
+    // Изменения с начала запроса сверки; null, если сверка не идёт
+    private Delta sinceRebuild;
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+            registry.gauge("filmorate.friends-graph.edges", this, graph -> graph.read(() -> graph.base.edges()));
+            registry.gauge("filmorate.friends-graph.delta", this, graph -> graph.read(() -> graph.delta.size()));
+            registry.gauge("filmorate.friends-graph.memory", this, graph -> graph.read(graph::memoryBytes));
+            load();
+        }
+    }
+
+    // Полная загрузка графа из БД под блокировкой: изменения ждут её окончания
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            base = query();
+            delta = new Delta();
+            ready = true;
+            log.info("Граф друзей загружен: {}.", report());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Сверка с БД: основа строится заново без блокировки, изменения за время запроса становятся новой дельтой
+    @Scheduled(initialDelayString = "${filmorate.friends-graph.reconcile-interval-ms:600000}",
+            fixedDelayString = "${filmorate.friends-graph.reconcile-interval-ms:600000}")
+    public void reconcile() {
+        lock.writeLock().lock();
+        try {
+            if (!ready || sinceRebuild != null) {
+                return;
+            }
+            sinceRebuild = new Delta();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Base fresh = null;
+        try {
+            fresh = query();
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (fresh != null) {
+                    base = fresh;
+                    delta = sinceRebuild;
+                    log.debug("Граф друзей сверен с БД: {}.", report());
+                }
+                sinceRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Друзья пользователя по возрастанию id
+    public int[] friends(Long userId) {
+        int user = Math.toIntExact(userId);
+        return read(() -> merged(user));
+    }
+
+    // Страница друзей по возрастанию id: больше afterId, не больше limit (null — без ограничения)
+    public int[] friends(Long userId, Long afterId, Integer limit) {
+        int[] all = friends(userId);
+        int from = firstAfter(all, afterId == null ? 0 : Math.toIntExact(afterId));
+        int to = limit == null ? all.length : (int) Math.min(all.length, (long) from + Math.max(0, limit));
+        return Arrays.copyOfRange(all, from, to);
+    }
+
+    // Общие друзья по возрастанию id, больше afterId, не больше limit (null — без ограничения)
+    public int[] commonFriends(Long userId, Long otherId, Long afterId, Integer limit) {
+        int[] mine = friends(userId);
+        int[] theirs = friends(otherId);
+        int capacity = Math.min(mine.length, theirs.length);
+        int[] common = new int[limit == null ? capacity : Math.max(0, Math.min(limit, capacity))];
+        int after = afterId == null ? 0 : Math.toIntExact(afterId);
+        int i = firstAfter(mine, after);
+        int j = firstAfter(theirs, after);
+        int size = 0;
+        while (i < mine.length && j < theirs.length && size < common.length) {
+            if (mine[i] < theirs[j]) {
+                i++;
+            } else if (mine[i] > theirs[j]) {
+                j++;
+            } else {
+                common[size++] = mine[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, size);
+    }
+
+    public void onFriendAdded(Long userId, Long friendId) {
+        change(userId, friendId, true);
+    }
+
+    public void onFriendRemoved(Long userId, Long friendId) {
+        change(userId, friendId, false);
+    }
+
+    // Строки friends пользователя удаляются каскадом; входящие рёбра отфильтровываются до сжатия
+    public void onUserDeleted(Long userId) {
+        int user = Math.toIntExact(userId);
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            delta.deleteUser(user);
+            if (sinceRebuild != null) {
+                sinceRebuild.deleteUser(user);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compactIfLarge();
+    }
+
+    // Перенос дельты в основу: новая основа строится без блокировки, читатели не ждут
+    @Scheduled(fixedDelayString = "${filmorate.friends-graph.compaction-interval-ms:60000}")
+    public void compact() {
+        if (!ready) {
+            return;
+        }
+        Base current;
+        Delta applied;
+        lock.readLock().lock();
+        try {
+            if (delta.size() == 0) {
+                return;
+            }
+            current = base;
+            applied = delta.copy();
+        } finally {
+            lock.readLock().unlock();
+        }
+        Base compacted = current.apply(applied);
+        lock.writeLock().lock();
+        try {
+            if (base != current) {
+                return;
+            }
+            base = compacted;
+            delta.subtract(applied);
+            log.debug("Дельта графа друзей перенесена в основу: {}.", report());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Отчёт о размере графа и занимаемой памяти
+    public String report() {
+        return read(() -> String.format("%d пользователей, %d рёбер, основа %d КБ, дельта %d записей (~%d КБ)",
+                base.users(), base.edges(), base.memoryBytes() / 1024, delta.size(),
+                delta.memoryBytes() / 1024));
+    }
+
+    public long memoryBytes() {
+        return read(() -> base.memoryBytes() + delta.memoryBytes());
+    }
+
+    // Изменение ждёт окончания загрузки, поэтому не теряется, даже если запрос загрузки его не увидел
+    private void change(Long userId, Long friendId, boolean present) {
+        int user = Math.toIntExact(userId);
+        int friend = Math.toIntExact(friendId);
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            delta.change(user, friend, present);
+            if (sinceRebuild != null) {
+                sinceRebuild.change(user, friend, present);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compactIfLarge();
+    }
+
+    private void compactIfLarge() {
+        boolean large;
+        lock.readLock().lock();
+        try {
+            large = delta.size() >= compactionThreshold;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (large) {
+            compact();
+        }
+    }
+
+    // Строки приходят по порядку, поэтому CSR собирается за один проход
+    private Base query() {
+        int[][] edges = {new int[1024], new int[1024]};
+        int[] count = {0};
+        jdbc.query(LOAD_QUERY, rs -> {
+            if (count[0] == edges[0].length) {
+                edges[0] = Arrays.copyOf(edges[0], count[0] * 2);
+                edges[1] = Arrays.copyOf(edges[1], count[0] * 2);
+            }
+            edges[0][count[0]] = Math.toIntExact(rs.getLong("user_id"));
+            edges[1][count[0]] = Math.toIntExact(rs.getLong("friend_id"));
+            count[0]++;
+        });
+        return Base.fromSortedEdges(edges[0], edges[1], count[0]);
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Строка основы с учётом дельты; вызывается под блокировкой чтения
+    private int[] merged(int user) {
+        if (delta.deletedUsers.contains(user)) {
+            return EMPTY;
+        }
+        int[] row = base.row(user);
+        Set<Integer> added = delta.added.getOrDefault(user, Delta.NONE);
+        Set<Integer> removed = delta.removed.getOrDefault(user, Delta.NONE);
+        if (added.isEmpty() && removed.isEmpty() && delta.deletedUsers.isEmpty()) {
+            return row;
+        }
+        int[] result = new int[row.length + added.size()];
+        int size = 0;
+        int i = 0;
+        for (int friend : added) {
+            while (i < row.length && row[i] < friend) {
+                size = keep(result, size, row[i++], removed);
+            }
+            if (i < row.length && row[i] == friend) {
+                i++;
+            }
+            size = keep(result, size, friend, removed);
+        }
+        while (i < row.length) {
+            size = keep(result, size, row[i++], removed);
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private int keep(int[] result, int size, int friend, Set<Integer> removed) {
+        if (removed.contains(friend) || delta.deletedUsers.contains(friend)) {
+            return size;
+        }
+        result[size] = friend;
+        return size + 1;
+    }
+
+    private static int firstAfter(int[] sorted, int after) {
+        int index = Arrays.binarySearch(sorted, after);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    // Неизменяемая основа в формате CSR
+    private record Base(int[] offsets, int[] neighbours) {
+        static Base fromSortedEdges(int[] from, int[] to, int count) {
+            int users = count == 0 ? 0 : from[count - 1] + 1;
+            int[] offsets = new int[users + 1];
+            for (int e = 0; e < count; e++) {
+                offsets[from[e] + 1]++;
+            }
+            for (int u = 0; u < users; u++) {
+                offsets[u + 1] += offsets[u];
+            }
+            return new Base(offsets, Arrays.copyOf(to, count));
+        }
+
+        int[] row(int user) {
+            if (user < 0 || user + 1 >= offsets.length) {
+                return EMPTY;
+            }
+            return Arrays.copyOfRange(neighbours, offsets[user], offsets[user + 1]);
+        }
+
+        // Новая основа: строки пользователей с изменениями пересобираются, остальные копируются как есть
+        Base apply(Delta changes) {
+            int users = offsets.length - 1;
+            for (int user : changes.added.keySet()) {
+                users = Math.max(users, user + 1);
+            }
+            int[] newOffsets = new int[users + 1];
+            int[] newNeighbours = new int[neighbours.length + changes.addedEdges()];
+            int size = 0;
+            for (int user = 0; user < users; user++) {
+                newOffsets[user] = size;
+                if (changes.deletedUsers.contains(user)) {
+                    continue;
+                }
+                int[] row = row(user);
+                Set<Integer> added = changes.added.getOrDefault(user, Delta.NONE);
+                Set<Integer> removed = changes.removed.getOrDefault(user, Delta.NONE);
+                if (added.isEmpty() && removed.isEmpty() && changes.deletedUsers.isEmpty()) {
+                    System.arraycopy(row, 0, newNeighbours, size, row.length);
+                    size += row.length;
+                    continue;
+                }
+                TreeSet<Integer> merged = new TreeSet<>(added);
+                for (int friend : row) {
+                    merged.add(friend);
+                }
+                merged.removeAll(removed);
+                merged.removeAll(changes.deletedUsers);
+                for (int friend : merged) {
+                    newNeighbours[size++] = friend;
+                }
+            }
+            newOffsets[users] = size;
+            return new Base(newOffsets, Arrays.copyOf(newNeighbours, size));
+        }
+
+        int users() {
+            int users = 0;
+            for (int u = 0; u + 1 < offsets.length; u++) {
+                users += offsets[u + 1] > offsets[u] ? 1 : 0;
+            }
+            return users;
+        }
+
+        int edges() {
+            return neighbours.length;
+        }
+
+        long memoryBytes() {
+            return 16 + 4L * offsets.length + 16 + 4L * neighbours.length;
+        }
+    }
+
+    // Изменения после последнего сжатия
+    private static final class Delta {
+        static final SortedSet<Integer> NONE = Collections.emptySortedSet();
+
+        final Map<Integer, SortedSet<Integer>> added = new HashMap<>();
+        final Map<Integer, SortedSet<Integer>> removed = new HashMap<>();
+        final Set<Integer> deletedUsers = new HashSet<>();
+
+        // Ребро переходит из противоположного множества, если было там
+        void change(int user, int friend, boolean present) {
+            Map<Integer, SortedSet<Integer>> from = present ? removed : added;
+            SortedSet<Integer> pending = from.get(user);
+            if (pending != null && pending.remove(friend) && pending.isEmpty()) {
+                from.remove(user);
+            }
+            (present ? added : removed).computeIfAbsent(user, u -> new TreeSet<>()).add(friend);
+        }
+
+        void deleteUser(int user) {
+            deletedUsers.add(user);
+            added.remove(user);
+            removed.remove(user);
+        }
+
+        Delta copy() {
+            Delta copy = new Delta();
+            added.forEach((user, friends) -> copy.added.put(user, new TreeSet<>(friends)));
+            removed.forEach((user, friends) -> copy.removed.put(user, new TreeSet<>(friends)));
+            copy.deletedUsers.addAll(deletedUsers);
+            return copy;
+        }
+
+        // Убирает перенесённое в основу; изменения, сделанные после снимка, остаются
+        void subtract(Delta applied) {
+            subtract(added, applied.added);
+            subtract(removed, applied.removed);
+            deletedUsers.removeAll(applied.deletedUsers);
+        }
+
+        private static void subtract(Map<Integer, SortedSet<Integer>> current,
+                                     Map<Integer, SortedSet<Integer>> applied) {
+            applied.forEach((user, friends) -> {
+                SortedSet<Integer> left = current.get(user);
+                if (left != null) {
+                    left.removeAll(friends);
+                    if (left.isEmpty()) {
+                        current.remove(user);
+                    }
+                }
+            });
+        }
+
+        int addedEdges() {
+            return added.values().stream().mapToInt(Set::size).sum();
+        }
+
+        int size() {
+            return addedEdges() + removed.values().stream().mapToInt(Set::size).sum() + deletedUsers.size();
+        }
+
+        long memoryBytes() {
+            return (long) DELTA_ENTRY_BYTES * (size() + added.size() + removed.size());
+        }
+    }
+}
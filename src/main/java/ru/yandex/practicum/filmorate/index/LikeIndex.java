@@ -0,0 +1,208 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Лайки в памяти в виде битовых множеств: для каждого пользователя — множество понравившихся фильмов,
+ * для каждого фильма — множество поставивших лайк пользователей.
+ * Готовность проверяется под блокировкой записи, поэтому лайк, закоммиченный во время load(),
+ * ждёт окончания загрузки и применяется к загруженным множествам. Операции идемпотентны,
+ * и лайк, уже прочитанный загрузкой, повторно ничего не меняет.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikeIndex {
+    private static final String LOAD_QUERY = "SELECT film_id, user_id FROM likes";
+    private static final BitSet EMPTY = new BitSet(0);
+
+    private final JdbcTemplate jdbc;
+
+    @Value("${filmorate.likes-index.enabled:true}")
+    private boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, BitSet> filmsByUser = new HashMap<>();
+    private final Map<Integer, BitSet> usersByFilm = new HashMap<>();
+    private volatile boolean ready;
+
+    // Доступ к множествам только на чтение и только внутри read(...)
+    public interface View {
+        BitSet films(int userId);
+
+        BitSet users(int filmId);
+    }
+
+    private final View view = new View() {
+        @Override
+        public BitSet films(int userId) {
+            return filmsByUser.getOrDefault(userId, EMPTY);
+        }
+
+        @Override
+        public BitSet users(int filmId) {
+            return usersByFilm.getOrDefault(filmId, EMPTY);
+        }
+    };
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            load();
+        }
+    }
+
+    // Полная загрузка лайков из БД
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            filmsByUser.clear();
+            usersByFilm.clear();
+            jdbc.query(LOAD_QUERY, rs -> {
+                set(Math.toIntExact(rs.getLong("film_id")), Math.toIntExact(rs.getLong("user_id")));
+            });
+            ready = true;
+            log.info("Индекс лайков загружен: {} пользователей, {} фильмов.", filmsByUser.size(), usersByFilm.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Согласованное чтение нескольких множеств под одной блокировкой
+    public <T> T read(Function<View, T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.apply(view);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Копия множества фильмов, которые понравились пользователю
+    public BitSet getFilms(Long userId) {
+        return read(v -> (BitSet) v.films(Math.toIntExact(userId)).clone());
+    }
+
+    // Фильмы, которые понравились обоим пользователям
+    public BitSet getCommonFilms(Long userId, Long otherId) {
+        return read(v -> {
+            BitSet common = (BitSet) v.films(Math.toIntExact(userId)).clone();
+            common.and(v.films(Math.toIntExact(otherId)));
+            return common;
+        });
+    }
+
+    // Изменение числа лайков фильмов, которое дадут ещё не записанные действия: итоговое действие по паре
+    // сравнивается с текущим состоянием, повторный лайк и снятие отсутствующего лайка ничего не меняют
+    public Map<Long, Long> likeDeltas(Collection<LikeEvent> likes) {
+        if (likes.isEmpty()) {
+            return Map.of();
+        }
+        return read(v -> {
+            Map<Long, Long> deltas = new HashMap<>();
+            for (LikeEvent like : likes) {
+                boolean liked = v.users(Math.toIntExact(like.filmId())).get(Math.toIntExact(like.userId()));
+                if (like.added() != liked) {
+                    deltas.merge(like.filmId(), like.added() ? 1L : -1L, Long::sum);
+                }
+            }
+            deltas.values().removeIf(delta -> delta == 0);
+            return deltas;
+        });
+    }
+
+    public void onLike(Long filmId, Long userId) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            set(Math.toIntExact(filmId), Math.toIntExact(userId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onUnlike(Long filmId, Long userId) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            clear(Math.toIntExact(filmId), Math.toIntExact(userId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onFilmDeleted(Long filmId) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            int film = Math.toIntExact(filmId);
+            BitSet users = usersByFilm.remove(film);
+            if (users != null) {
+                users.stream().forEach(user -> removeBit(filmsByUser, user, film));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onUserDeleted(Long userId) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            int user = Math.toIntExact(userId);
+            BitSet films = filmsByUser.remove(user);
+            if (films != null) {
+                films.stream().forEach(film -> removeBit(usersByFilm, film, user));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void set(int filmId, int userId) {
+        filmsByUser.computeIfAbsent(userId, id -> new BitSet()).set(filmId);
+        usersByFilm.computeIfAbsent(filmId, id -> new BitSet()).set(userId);
+    }
+
+    private void clear(int filmId, int userId) {
+        removeBit(filmsByUser, userId, filmId);
+        removeBit(usersByFilm, filmId, userId);
+    }
+
+    private static void removeBit(Map<Integer, BitSet> sets, int key, int bit) {
+        BitSet set = sets.get(key);
+        if (set != null) {
+            set.clear(bit);
+            if (set.isEmpty()) {
+                sets.remove(key);
+            }
+        }
+    }
+}
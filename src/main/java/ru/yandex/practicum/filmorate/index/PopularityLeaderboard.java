@@ -0,0 +1,302 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Рейтинг популярности фильмов в памяти.
+ * Для каждого сочетания (жанр, год) хранит упорядоченный набор фильмов, поэтому топ-K
+ * отдаётся за O(k) без обращения к БД. Порядок совпадает с SQL: лайки по убыванию, затем film_id.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PopularityLeaderboard {
+    private static final String LOAD_QUERY = "SELECT f.film_id, f.likes_count, f.release_year, fg.genre_id " +
+            "FROM films f JOIN mpa m ON f.mpa_id = m.id " +
+            "LEFT JOIN film_genre fg ON f.film_id = fg.film_id";
+
+    private static final Comparator<Rank> ORDER = Comparator.comparingLong(Rank::likes).reversed()
+            .thenComparingLong(Rank::filmId);
+
+    private final JdbcTemplate jdbc;
+
+    @Value("${filmorate.leaderboard.enabled:true}")
+    private boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> films = new HashMap<>();
+    private final Map<Board, NavigableSet<Rank>> boards = new HashMap<>();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Загрузка раньше стартовой сверки счётчиков лайков в LikesCountReconciliationJob
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onApplicationReady() {
+        if (enabled) {
+            load();
+        }
+    }
+
+    // Полная загрузка рейтинга из БД
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            films.clear();
+            boards.clear();
+            jdbc.query(LOAD_QUERY, rs -> {
+                long filmId = rs.getLong("film_id");
+                Entry entry = films.computeIfAbsent(filmId,
+                        id -> new Entry(id, 0, 0, new TreeSet<>()));
+                entry.likes = rs.getLong("likes_count");
+                entry.year = rs.getInt("release_year");
+                int genreId = rs.getInt("genre_id");
+                if (!rs.wasNull()) {
+                    entry.genres.add(genreId);
+                }
+            });
+            films.values().forEach(this::link);
+            ready = true;
+            log.info("Рейтинг популярности загружен: {} фильмов.", films.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Идентификаторы самых популярных фильмов с учётом необязательных фильтров
+    public List<Long> getTop(int count, Integer genreId, Integer year) {
+        return getTop(count, genreId, year, Map.of());
+    }
+
+    // То же с поправкой на ещё не записанные изменения лайков: фильмы без поправки идут в порядке рейтинга,
+    // фильмы с поправкой вставляются в него со своим итоговым числом лайков
+    public List<Long> getTop(int count, Integer genreId, Integer year, Map<Long, Long> pendingDeltas) {
+        Board key = new Board(genreId, year);
+        lock.readLock().lock();
+        try {
+            NavigableSet<Rank> board = boards.get(key);
+            if (board == null || count <= 0) {
+                return List.of();
+            }
+            List<Rank> ranks = new ArrayList<>(Math.min(count, board.size()) + pendingDeltas.size());
+            Iterator<Rank> iterator = board.iterator();
+            int taken = 0;
+            while (iterator.hasNext() && taken < count) {
+                Rank rank = iterator.next();
+                if (!pendingDeltas.containsKey(rank.filmId())) {
+                    ranks.add(rank);
+                    taken++;
+                }
+            }
+            pendingDeltas.forEach((filmId, delta) -> {
+                Entry entry = films.get(filmId);
+                if (entry != null && entry.boards().contains(key)) {
+                    ranks.add(new Rank(Math.max(0, entry.likes + delta), filmId));
+                }
+            });
+            if (!pendingDeltas.isEmpty()) {
+                ranks.sort(ORDER);
+            }
+            return ranks.stream().limit(count).map(Rank::filmId).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Текущее число лайков фильма, 0 если фильм неизвестен
+    public long getLikes(Long filmId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = films.get(filmId);
+            return entry != null ? entry.likes : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Упорядочивание произвольного набора фильмов так же, как в рейтинге
+    public List<Long> orderByPopularity(Collection<Long> filmIds) {
+        return orderByPopularity(filmIds, Map.of());
+    }
+
+    // То же с поправкой на ещё не записанные изменения лайков
+    public List<Long> orderByPopularity(Collection<Long> filmIds, Map<Long, Long> pendingDeltas) {
+        lock.readLock().lock();
+        try {
+            return filmIds.stream()
+                    .map(filmId -> {
+                        Entry entry = films.get(filmId);
+                        long likes = (entry != null ? entry.likes : 0) + pendingDeltas.getOrDefault(filmId, 0L);
+                        return new Rank(Math.max(0, likes), filmId);
+                    })
+                    .sorted(ORDER)
+                    .map(Rank::filmId)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Число фильмов, у которых лайки в рейтинге расходятся с films.likes_count
+    public int countDrift(Map<Long, Long> likesCounts) {
+        lock.readLock().lock();
+        try {
+            int drift = 0;
+            for (Map.Entry<Long, Long> count : likesCounts.entrySet()) {
+                Entry entry = films.get(count.getKey());
+                if (entry == null || entry.likes != count.getValue()) {
+                    drift++;
+                }
+            }
+            return drift + Math.max(0, films.size() - likesCounts.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Изменение числа лайков фильма на delta. Готовность проверяется под блокировкой записи:
+    // изменение, закоммиченное во время load(), ждёт окончания загрузки и не теряется
+    public void onLikesChanged(Long filmId, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Entry entry = films.get(filmId);
+            if (!ready || entry == null) {
+                return;
+            }
+            unlink(entry);
+            entry.likes = Math.max(0, entry.likes + delta);
+            link(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Добавление или обновление фильма: год и жанры могли измениться, лайки сохраняются
+    public void onFilmSaved(Film film) {
+        if (film.getMpa() == null) {
+            return;
+        }
+        Set<Integer> genres = film.getGenres() == null ? new TreeSet<>() : film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toCollection(TreeSet::new));
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            Entry entry = films.get(film.getId());
+            long likes = 0;
+            if (entry != null) {
+                unlink(entry);
+                likes = entry.likes;
+            }
+            int year = film.getReleaseDate() != null ? film.getReleaseDate().getYear() : 0;
+            entry = new Entry(film.getId(), likes, year, genres);
+            films.put(entry.filmId, entry);
+            link(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void onFilmDeleted(Long filmId) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            Entry entry = films.remove(filmId);
+            if (entry != null) {
+                unlink(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void link(Entry entry) {
+        Rank rank = entry.rank();
+        for (Board board : entry.boards()) {
+            boards.computeIfAbsent(board, b -> new TreeSet<>(ORDER)).add(rank);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        Rank rank = entry.rank();
+        for (Board board : entry.boards()) {
+            NavigableSet<Rank> set = boards.get(board);
+            if (set != null) {
+                set.remove(rank);
+                if (set.isEmpty()) {
+                    boards.remove(board);
+                }
+            }
+        }
+    }
+
+    private record Board(Integer genreId, Integer year) {
+    }
+
+    private record Rank(long likes, long filmId) {
+    }
+
+    private static final class Entry {
+        private final long filmId;
+        private long likes;
+        private int year;
+        private final Set<Integer> genres;
+
+        private Entry(long filmId, long likes, int year, Set<Integer> genres) {
+            this.filmId = filmId;
+            this.likes = likes;
+            this.year = year;
+            this.genres = genres;
+        }
+
+        private Rank rank() {
+            return new Rank(likes, filmId);
+        }
+
+        // Все срезы рейтинга, в которые попадает фильм
+        private Collection<Board> boards() {
+            List<Board> result = new ArrayList<>(2 + genres.size() * 2);
+            result.add(new Board(null, null));
+            result.add(new Board(null, year));
+            for (Integer genreId : genres) {
+                result.add(new Board(genreId, null));
+                result.add(new Board(genreId, year));
+            }
+            return result;
+        }
+    }
+}
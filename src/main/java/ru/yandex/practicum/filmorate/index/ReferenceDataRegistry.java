@@ -0,0 +1,165 @@
+package ru.yandex.practicum.filmorate.index;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.mapper.GenreMapper;
+import ru.yandex.practicum.filmorate.mapper.MpaMapper;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Справочники жанров и рейтингов MPA в памяти.
+ * Таблицы genre и mpa заполняются один раз из data.sql, поэтому чтения и проверки идентификаторов
+ * обслуживаются из неизменяемого снимка: массивов, индексированных по id, и готового JSON для списков.
+ * JSON пишется ObjectMapper приложения, поэтому совпадает с тем, что отдали бы контроллеры.
+ * После изменения таблиц снимок пересобирается вызовом refresh().
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReferenceDataRegistry {
+    private final JdbcTemplate jdbc;
+    private final ObjectProvider<ObjectMapper> objectMapper;
+
+    // не synchronized: запросы к БД под монитором закрепляют виртуальный поток за несущим
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refresh();
+    }
+
+    // Пересборка снимка из БД; читатели видят либо старый, либо новый снимок целиком
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            rebuild();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void rebuild() {
+        List<Genre> genres = jdbc.query("SELECT id, name FROM genre ORDER BY id", (rs, rowNum) -> {
+            Genre genre = new Genre();
+            genre.setId(rs.getInt("id"));
+            genre.setName(rs.getString("name"));
+            return genre;
+        });
+        List<Mpa> mpa = jdbc.query("SELECT id, name FROM mpa ORDER BY id",
+                (rs, rowNum) -> new Mpa(rs.getInt("id"), rs.getString("name")));
+        Snapshot previous = snapshot;
+        snapshot = new Snapshot(
+                genresById(genres),
+                mpaById(mpa),
+                List.copyOf(genres),
+                List.copyOf(mpa),
+                toJson(genres.stream().map(GenreMapper::mapToGenreDto).toList()),
+                toJson(mpa.stream().map(MpaMapper::mapToMpaDto).toList()),
+                previous == null ? 1 : previous.genresVersion() + (previous.genreList().equals(genres) ? 0 : 1),
+                previous == null ? 1 : previous.mpaVersion() + (previous.mpaList().equals(mpa) ? 0 : 1));
+        log.info("Справочники загружены: {} жанров, {} рейтингов MPA.", genres.size(), mpa.size());
+    }
+
+    public List<Genre> getGenres() {
+        return current().genreList().stream().map(ReferenceDataRegistry::copy).toList();
+    }
+
+    public Optional<Genre> getGenre(Integer genreId) {
+        Genre[] genres = current().genres();
+        if (genreId == null || genreId < 0 || genreId >= genres.length || genres[genreId] == null) {
+            return Optional.empty();
+        }
+        return Optional.of(copy(genres[genreId]));
+    }
+
+    public String getGenreName(int genreId) {
+        return getGenre(genreId).map(Genre::getName).orElse(null);
+    }
+
+    public List<Mpa> getAllMpa() {
+        return current().mpaList().stream().map(ReferenceDataRegistry::copy).toList();
+    }
+
+    public Optional<Mpa> getMpa(Integer mpaId) {
+        Mpa[] mpa = current().mpa();
+        if (mpaId == null || mpaId < 0 || mpaId >= mpa.length || mpa[mpaId] == null) {
+            return Optional.empty();
+        }
+        return Optional.of(copy(mpa[mpaId]));
+    }
+
+    // Версии справочников растут только при изменении их содержимого; по ним строятся ETag ответов
+    public long getGenresVersion() {
+        return current().genresVersion();
+    }
+
+    public long getMpaVersion() {
+        return current().mpaVersion();
+    }
+
+    public byte[] getGenresJson() {
+        return current().genresJson().clone();
+    }
+
+    public byte[] getMpaJson() {
+        return current().mpaJson().clone();
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            refresh();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    private static Genre[] genresById(List<Genre> genres) {
+        Genre[] result = new Genre[genres.stream().mapToInt(Genre::getId).max().orElse(-1) + 1];
+        genres.forEach(genre -> result[genre.getId()] = genre);
+        return result;
+    }
+
+    private static Mpa[] mpaById(List<Mpa> mpa) {
+        Mpa[] result = new Mpa[mpa.stream().mapToInt(Mpa::getId).max().orElse(-1) + 1];
+        mpa.forEach(rating -> result[rating.getId()] = rating);
+        return result;
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.getIfAvailable(ObjectMapper::new).writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new InternalServerException("Не удалось сериализовать справочник");
+        }
+    }
+
+    private static Genre copy(Genre genre) {
+        Genre copy = new Genre();
+        copy.setId(genre.getId());
+        copy.setName(genre.getName());
+        return copy;
+    }
+
+    private static Mpa copy(Mpa mpa) {
+        return new Mpa(mpa.getId(), mpa.getName());
+    }
+
+    private record Snapshot(Genre[] genres, Mpa[] mpa, List<Genre> genreList, List<Mpa> mpaList,
+                            byte[] genresJson, byte[] mpaJson, long genresVersion, long mpaVersion) {
+    }
+}
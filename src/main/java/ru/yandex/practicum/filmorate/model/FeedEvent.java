@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.time.Instant;
+
+/**
+ * Событие ленты до записи в таблицу feeds. Идентификаторы типов и операций совпадают
+ * со справочниками event_type и operations из data.sql.
+ */
+public record FeedEvent(long userId, long entityId, Type type, Operation operation, long timestamp) {
+
+    public static FeedEvent of(long userId, long entityId, Type type, Operation operation) {
+        return new FeedEvent(userId, entityId, type, operation, Instant.now().toEpochMilli());
+    }
+
+    public enum Type {
+        LIKE(1), REVIEW(2), FRIEND(3);
+
+        private final int id;
+
+        Type(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+    }
+
+    public enum Operation {
+        REMOVE(1), ADD(2), UPDATE(3);
+
+        private final int id;
+
+        Operation(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * Действие пользователя с лайком фильма: added = true — лайк поставлен, false — снят.
+ */
+public record LikeEvent(long filmId, long userId, boolean added, long timestamp) {
+}
@@ -17,6 +17,8 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class DirectorService {
     private final DirectorStorage directorStorage;
+    private final FilmCache filmCache;
+    private final VersionRegistry versions;
 
     public List<DirectorDto> getAll() {
         Collection<Director> directors = directorStorage.getAll();
@@ -46,11 +48,15 @@ public class DirectorService {
             throw new IllegalArgumentException("Имя режиссёра не может быть пустым или состоять только из пробелов");
         }
         Director updatedDirector = directorStorage.update(director);
+        filmCache.invalidateDirector(director.getId());
+        versions.onDirectorsChanged();
         return DirectorMapper.mapToDirectorDto(updatedDirector);
     }
 
     public void delete(Long id) {
         getById(id); // проверяем существование
         directorStorage.delete(id);
+        filmCache.invalidateDirector(id);
+        versions.onDirectorsChanged();
     }
 }
\ No newline at end of file
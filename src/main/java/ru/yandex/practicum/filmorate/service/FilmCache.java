@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.index.AfterCommit;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Кэш собранных FilmDto по id фильма для GET /films/{id}: вместо трёх запросов (фильм с MPA, жанры, режиссёры)
+ * карточка берётся из памяти. Размер ограничен приблизительным весом записей в байтах, записи живут не дольше ttl-ms.
+ * Сбрасывается точечно после фиксации изменения фильма, его удаления и изменения его режиссёров.
+ * Метрики — стандартные cache.* с тегом cache=films. Отключается filmorate.film-cache.enabled=false.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmCache {
+    public static final String NAME = "films";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${filmorate.film-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${filmorate.film-cache.ttl-ms:600000}")
+    private long ttlMs;
+
+    @Value("${filmorate.film-cache.max-weight-bytes:16777216}")
+    private long maxWeightBytes;
+
+    private Cache<Long, FilmDto> cache;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Кэш фильмов отключён.");
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((Long filmId, FilmDto film) -> weigh(film))
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry.getIfAvailable(SimpleMeterRegistry::new), cache, NAME);
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    // Фильм из кэша, при промахе — из loader; отсутствующие фильмы не кэшируются.
+    // Возвращается копия, чтобы вызывающий код не мог изменить закэшированную запись
+    public Optional<FilmDto> get(Long filmId, Function<Long, Optional<FilmDto>> loader) {
+        if (cache == null) {
+            return loader.apply(filmId);
+        }
+        return Optional.ofNullable(cache.get(filmId, id -> loader.apply(id).orElse(null))).map(FilmCache::copy);
+    }
+
+    // Сброс записи после фиксации транзакции: загрузка, начатая до фиксации, завершится раньше сброса
+    public void invalidate(Long filmId) {
+        if (cache != null) {
+            AfterCommit.run(() -> cache.invalidate(filmId));
+        }
+    }
+
+    // Сброс всех фильмов режиссёра; изменения режиссёров редки, поэтому кэш просматривается целиком
+    public void invalidateDirector(Long directorId) {
+        if (cache == null) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            List<Long> filmIds = cache.asMap().entrySet().stream()
+                    .filter(entry -> entry.getValue().getDirectors().stream()
+                            .anyMatch(director -> directorId.equals(director.getId())))
+                    .map(Map.Entry::getKey)
+                    .toList();
+            cache.invalidateAll(filmIds);
+            log.debug("Из кэша фильмов сброшено {} записей режиссёра {}.", filmIds.size(), directorId);
+        });
+    }
+
+    // Приблизительный размер записи в байтах: объекты, строки и элементы множеств
+    private static int weigh(FilmDto film) {
+        int weight = 160 + weigh(film.getName()) + weigh(film.getDescription());
+        if (film.getMpa() != null) {
+            weight += 32 + weigh(film.getMpa().getName());
+        }
+        for (Genre genre : film.getGenres()) {
+            weight += 64 + weigh(genre.getName());
+        }
+        for (Director director : film.getDirectors()) {
+            weight += 64 + weigh(director.getName());
+        }
+        return weight;
+    }
+
+    private static int weigh(String value) {
+        return value == null ? 0 : 40 + 2 * value.length();
+    }
+
+    private static FilmDto copy(FilmDto film) {
+        FilmDto copy = new FilmDto();
+        copy.setId(film.getId());
+        copy.setName(film.getName());
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setDuration(film.getDuration());
+        copy.setMpa(film.getMpa());
+        copy.setGenres(new LinkedHashSet<>(film.getGenres()));
+        copy.setDirectors(new LinkedHashSet<>(film.getDirectors()));
+        return copy;
+    }
+}
@@ -0,0 +1,172 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.FilmImportResultDto;
+import ru.yandex.practicum.filmorate.dto.NewFilmRequest;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетный импорт фильмов из потока NDJSON или JSON-массива.
+ * Тело читается потоковым парсером Jackson по одной записи, записи копятся в пакеты по chunk-size штук,
+ * каждый пакет сохраняется в своей транзакции. Ошибка записи не прерывает импорт остальных.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FilmImportService {
+
+    private final FilmStorage filmDbStorage;
+    private final DirectorStorage directorStorage;
+    private final FilmService filmService;
+    private final VersionRegistry versions;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Value("${filmorate.bulk.chunk-size:500}")
+    private int chunkSize;
+
+    // Импорт фильмов из потока; результаты возвращаются в порядке записей
+    public List<FilmImportResultDto> importFilms(InputStream body) {
+        List<FilmImportResultDto> results = new ArrayList<>();
+        List<Pending> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+            while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                JsonNode node = parser.readValueAsTree();
+                Pending pending = parse(index++, node, results);
+                if (pending != null) {
+                    chunk.add(pending);
+                    if (chunk.size() >= chunkSize) {
+                        flush(chunk, results);
+                    }
+                }
+                token = parser.nextToken();
+            }
+        } catch (JsonProcessingException e) {
+            results.add(failed(index, "Некорректный JSON: " + e.getOriginalMessage()));
+        } catch (IOException e) {
+            throw new InternalServerException("Не удалось прочитать тело запроса");
+        }
+        flush(chunk, results);
+        results.sort(Comparator.comparingInt(FilmImportResultDto::getIndex));
+        log.info("Импорт фильмов: обработано {} записей, создано {}.", index,
+                results.stream().filter(result -> FilmImportResultDto.CREATED.equals(result.getStatus())).count());
+        return results;
+    }
+
+    // Разбор и проверка полей одной записи; при ошибке результат сразу попадает в список
+    private Pending parse(int index, JsonNode node, List<FilmImportResultDto> results) {
+        if (!node.isObject()) {
+            results.add(failed(index, "Запись должна быть объектом"));
+            return null;
+        }
+        NewFilmRequest request;
+        try {
+            request = objectMapper.treeToValue(node, NewFilmRequest.class);
+        } catch (JsonProcessingException e) {
+            results.add(failed(index, e.getOriginalMessage()));
+            return null;
+        }
+        Set<ConstraintViolation<NewFilmRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            results.add(failed(index, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; "))));
+            return null;
+        }
+        return new Pending(index, FilmMapper.mapToFilm(request));
+    }
+
+    // Проверка ссылок пакета (режиссёры одним запросом) и сохранение прошедших проверку записей
+    private void flush(List<Pending> chunk, List<FilmImportResultDto> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<Long> directorIds = new HashSet<>();
+        chunk.forEach(pending -> pending.film().getDirectors().forEach(director -> directorIds.add(director.getId())));
+        Map<Long, Director> directors = directorStorage.getDirectorsByIds(directorIds);
+
+        List<Pending> valid = new ArrayList<>(chunk.size());
+        for (Pending pending : chunk) {
+            try {
+                filmService.resolveReferences(pending.film(), directors);
+                valid.add(pending);
+            } catch (NotFoundException e) {
+                results.add(failed(pending.index(), e.getMessage()));
+            }
+        }
+        try {
+            filmDbStorage.createAll(valid.stream().map(Pending::film).toList());
+            valid.forEach(pending -> results.add(created(pending.index(), pending.film().getId())));
+            valid.forEach(pending -> versions.onFilmChanged(pending.film().getId()));
+        } catch (DataAccessException | InternalServerException e) {
+            // Пакет откатился целиком: записи сохраняются по одной, чтобы ошибку получили только виновные
+            log.warn("Не удалось сохранить пакет из {} фильмов, сохранение по одному: {}", valid.size(), e.getMessage());
+            valid.forEach(pending -> results.add(createOne(pending)));
+        }
+        chunk.clear();
+    }
+
+    private FilmImportResultDto createOne(Pending pending) {
+        pending.film().setId(null);
+        try {
+            filmDbStorage.createAll(List.of(pending.film()));
+            versions.onFilmChanged(pending.film().getId());
+            return created(pending.index(), pending.film().getId());
+        } catch (DataAccessException | InternalServerException e) {
+            return failed(pending.index(), "Не удалось сохранить фильм");
+        }
+    }
+
+    private static FilmImportResultDto created(int index, Long id) {
+        FilmImportResultDto result = new FilmImportResultDto();
+        result.setIndex(index);
+        result.setStatus(FilmImportResultDto.CREATED);
+        result.setId(id);
+        return result;
+    }
+
+    private static FilmImportResultDto failed(int index, String error) {
+        FilmImportResultDto result = new FilmImportResultDto();
+        result.setIndex(index);
+        result.setStatus(FilmImportResultDto.FAILED);
+        result.setError(error);
+        return result;
+    }
+
+    private record Pending(int index, Film film) {
+    }
+}
@@ -4,9 +4,14 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.FilmSuggestionDto;
 import ru.yandex.practicum.filmorate.dto.NewFilmRequest;
 import ru.yandex.practicum.filmorate.dto.UpdateFilmRequest;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
 import ru.yandex.practicum.filmorate.mapper.FilmMapper;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
@@ -14,6 +19,7 @@ import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.*;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -27,127 +33,117 @@ public class FilmService {
     private final UserStorage userDbStorage;
     private final DirectorStorage directorStorage;
     private final DirectorService directorService;
+    private final PopularityLeaderboard leaderboard;
+    private final LikeIndex likeIndex;
+    private final FilmSearchIndex searchIndex;
+    private final FilmSuggestIndex suggestIndex;
+    private final LikeWriteBuffer likeBuffer;
+    private final FilmCache filmCache;
+    private final VersionRegistry versions;
+    private final RequestCoalescer coalescer;
 
     public Collection<FilmDto> getAll() {
-        Collection<Film> films = filmDbStorage.getAll();
+        return filmDbStorage.getAll().stream()
+                .map(FilmMapper::mapToFilmDto)
+                .collect(Collectors.toList());
+    }
 
-        if (films.isEmpty()) {
-            return new ArrayList<>();
+    // Постраничная выдача по ключу: без параметров возвращается весь каталог
+    public Collection<FilmDto> getFilms(Long afterId, Integer limit) {
+        if (afterId == null && limit == null) {
+            return getAll();
         }
-
-        List<Long> listFilmIds = films.stream().map(Film::getId).collect(Collectors.toList());
-
-        Map<Long, TreeSet<Genre>> genresForFilms = genreDbStorage.getGenresForFilms(listFilmIds);
-        Map<Long, Set<Director>> directorsForFilms = directorStorage.getDirectorsForFilms(listFilmIds);
-
-        films.forEach(film -> {
-            film.setGenres(genresForFilms.getOrDefault(film.getId(), new TreeSet<>()));
-            film.setDirectors(directorsForFilms.getOrDefault(film.getId(), new HashSet<>()));
-        });
-
-        return films.stream()
+        return filmDbStorage.getFilms(afterId, limit).stream()
                 .map(FilmMapper::mapToFilmDto)
                 .collect(Collectors.toList());
     }
 
+    public void streamFilms(Long afterId, Consumer<FilmDto> consumer) {
+        filmDbStorage.streamFilms(afterId, film -> consumer.accept(FilmMapper.mapToFilmDto(film)));
+    }
+
     public FilmDto getFilm(Long filmId) {
-        FilmDto filmDto = filmDbStorage.getFilm(filmId).map(FilmMapper::mapToFilmDto)
+        return filmCache.get(filmId, id -> filmDbStorage.getFilm(id).map(FilmMapper::mapToFilmDto))
                 .orElseThrow(() -> new NotFoundException("Фильм с ID " + filmId + " не найден."));
-
-        filmDto.setGenres(genreDbStorage.getFilmGenres(filmId));
-        filmDto.setDirectors(directorStorage.getFilmDirectors(filmId));
-        return filmDto;
     }
 
-    public FilmDto create(NewFilmRequest request) {
-        Film film = FilmMapper.mapToFilm(request);
-
-        if (film.getMpa() == null || !(mpaDbStorage.getMpa(film.getMpa().getId()).isPresent())) {
-            throw new NotFoundException("Рейтинга с id " + (film.getMpa() != null ? film.getMpa().getId() : "null") + " нет.");
-        }
-
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            for (Genre genre : film.getGenres()) {
-                if (!genreDbStorage.getGenre(genre.getId()).isPresent()) {
-                    throw new NotFoundException("Жанра с id " + genre.getId() + " нет.");
-                }
-            }
-        }
-
-        if (film.getDirectors() != null && !film.getDirectors().isEmpty()) {
-            for (Director director : film.getDirectors()) {
-                if (!directorStorage.getDirector(director.getId()).isPresent()) {
-                    throw new NotFoundException("Режиссёра с id " + director.getId() + " нет.");
-                }
-            }
+    // Проверка существования фильма: сначала индекс в памяти, затем БД
+    public void checkFilmExists(Long filmId) {
+        if (!filmDbStorage.exists(filmId)) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден.");
         }
+    }
 
-        film = filmDbStorage.create(film);
-
-        film.setGenres(genreDbStorage.getFilmGenres(film.getId()));
-        film.setDirectors(directorStorage.getFilmDirectors(film.getId()));
-
-        return FilmMapper.mapToFilmDto(film);
+    public FilmDto create(NewFilmRequest request) {
+        Film film = resolveReferences(FilmMapper.mapToFilm(request));
+        Film created = filmDbStorage.create(film);
+        versions.onFilmChanged(created.getId());
+        return FilmMapper.mapToFilmDto(created);
     }
 
     public FilmDto update(UpdateFilmRequest request) {
-        Film updateFilm = FilmMapper.updateFilmFields(new Film(), request);
-
-        if (!filmDbStorage.getFilm(updateFilm.getId()).isPresent()) {
-            throw new NotFoundException("Фильма с id " + updateFilm.getId() + " не найден.");
-        }
-
-        if (updateFilm.getMpa() == null || !(mpaDbStorage.getMpa(updateFilm.getMpa().getId()).isPresent())) {
-            throw new NotFoundException("Рейтинга с id " + (updateFilm.getMpa() != null ? updateFilm.getMpa().getId() : "null") + " нет.");
-        }
-
-        if (updateFilm.getGenres() != null && !updateFilm.getGenres().isEmpty()) {
-            for (Genre genre : updateFilm.getGenres()) {
-                if (!genreDbStorage.getGenre(genre.getId()).isPresent()) {
-                    throw new NotFoundException("Жанра с id " + genre.getId() + " нет.");
-                }
-            }
-        }
-
-        if (updateFilm.getDirectors() != null && !updateFilm.getDirectors().isEmpty()) {
-            for (Director director : updateFilm.getDirectors()) {
-                if (!directorStorage.getDirector(director.getId()).isPresent()) {
-                    throw new NotFoundException("Режиссёра с id " + director.getId() + " нет.");
-                }
-            }
-        }
-
-        updateFilm = filmDbStorage.update(updateFilm);
-
-        updateFilm.setGenres(genreDbStorage.getFilmGenres(updateFilm.getId()));
-        updateFilm.setDirectors(directorStorage.getFilmDirectors(updateFilm.getId()));
-
-        return FilmMapper.mapToFilmDto(updateFilm);
+        Film updateFilm = resolveReferences(FilmMapper.updateFilmFields(new Film(), request));
+        Film updated = filmDbStorage.update(updateFilm);
+        filmCache.invalidate(updated.getId());
+        versions.onFilmChanged(updated.getId());
+        return FilmMapper.mapToFilmDto(updated);
     }
 
     public FilmDto deleteFilm(Long filmId) {
         Film film = filmDbStorage.getFilm(filmId).orElseThrow(() -> new NotFoundException("Фильма с id " + filmId + " нет."));
-        film.setGenres(genreDbStorage.getFilmGenres(film.getId()));
-        film.setDirectors(directorStorage.getFilmDirectors(film.getId()));
         filmDbStorage.deleteFilm(filmId);
+        filmCache.invalidate(filmId);
+        versions.onFilmDeleted(filmId);
         return FilmMapper.mapToFilmDto(film);
     }
 
     public void addLike(Long filmId, Long userId) {
         userDbStorage.existsUserById(userId);
-        filmDbStorage.addLike(filmId, userId);
+        if (!bufferLike(filmId, userId, true)) {
+            filmDbStorage.addLike(filmId, userId);
+        }
+        versions.onPopularityChanged();
         log.info("Пользователь с id {} поставил лайк фильму с id {} .", userId, filmId);
     }
 
     public void deleteLike(Long filmId, Long userId) {
         userDbStorage.existsUserById(userId);
-        filmDbStorage.deleteLike(filmId, userId);
+        if (!bufferLike(filmId, userId, false)) {
+            filmDbStorage.deleteLike(filmId, userId);
+        }
+        versions.onPopularityChanged();
         log.info("Пользователь с id {} удалил лайк фильму с id {} .", userId, filmId);
     }
 
     public Collection<FilmDto> getPopularFilms(Integer count, Integer genreId, Integer year) {
+        return coalescer.execute(RequestCoalescer.POPULAR, Arrays.asList(count, genreId, year),
+                () -> loadPopularFilms(count, genreId, year));
+    }
+
+    // Одинаковые поиски различаются только регистром запроса и порядком полей by
+    public Collection<Film> searchFilms(String query, List<String> by) {
+        List<?> args = Arrays.asList(query.toLowerCase(Locale.ROOT), by == null ? null : new TreeSet<>(by));
+        return coalescer.execute(RequestCoalescer.SEARCH, args, () -> loadSearchFilms(query, by));
+    }
+
+    private Collection<Film> loadSearchFilms(String query, List<String> by) {
+        if (searchIndex.isReady() && leaderboard.isReady() && !hasLikeWildcards(query)) {
+            List<String> searchBy = by == null || by.isEmpty() ? List.of("title") : by;
+            return filmDbStorage.getFilmsByIds(leaderboard.orderByPopularity(searchIndex.search(query, searchBy),
+                    pendingLikeDeltas()));
+        }
+        likeBuffer.flush();
+        return filmDbStorage.searchFilms(query, by);
+    }
+
+    private Collection<FilmDto> loadPopularFilms(Integer count, Integer genreId, Integer year) {
         Collection<Film> popularFilms;
-        if (genreId != null && year != null) {
+        if (!leaderboard.isReady()) {
+            likeBuffer.flush();
+        }
+        if (leaderboard.isReady()) {
+            popularFilms = filmDbStorage.getFilmsByIds(leaderboard.getTop(count, genreId, year, pendingLikeDeltas()));
+        } else if (genreId != null && year != null) {
             popularFilms = filmDbStorage.getPopularFilmsByGenreAndYear(count, genreId, year);
         } else if (genreId != null) {
             popularFilms = filmDbStorage.getPopularFilmsByGenre(count, genreId);
@@ -157,67 +153,103 @@ public class FilmService {
             popularFilms = filmDbStorage.getPopularFilms(count);
         }
 
-        if (popularFilms.isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        List<Long> listFilmIds = popularFilms.stream().map(Film::getId).collect(Collectors.toList());
-
-        Map<Long, TreeSet<Genre>> genresForFilms = genreDbStorage.getGenresForFilms(listFilmIds);
-        Map<Long, Set<Director>> directorsForFilms = directorStorage.getDirectorsForFilms(listFilmIds);
+        return popularFilms.stream().map(FilmMapper::mapToFilmDto).collect(Collectors.toList());
+    }
 
-        popularFilms.forEach(film -> {
-            film.setGenres(genresForFilms.getOrDefault(film.getId(), new TreeSet<>()));
-            film.setDirectors(directorsForFilms.getOrDefault(film.getId(), new HashSet<>()));
-        });
+    // Подсказки при вводе: из префиксного дерева, пока оно не построено — по названиям фильмов из БД.
+    // Префикс без букв и цифр ничего не находит, а не отдаёт самые популярные фильмы
+    public List<FilmSuggestionDto> suggest(String prefix, int limit) {
+        if (FilmSuggestIndex.normalize(prefix).isEmpty()) {
+            return List.of();
+        }
+        if (suggestIndex.isReady()) {
+            return suggestIndex.suggest(prefix, limit);
+        }
+        return filmDbStorage.suggestFilms(prefix.trim(), Math.min(limit, suggestIndex.getTopK())).stream()
+                .map(film -> {
+                    FilmSuggestionDto dto = new FilmSuggestionDto();
+                    dto.setType(FilmSuggestIndex.FILM);
+                    dto.setId(film.getId());
+                    dto.setText(film.getName());
+                    return dto;
+                })
+                .toList();
+    }
 
-        popularFilms.forEach(film -> film.setGenres(genresForFilms.getOrDefault(film.getId(), new TreeSet<>())));
+    public Collection<Film> getFilmsByDirector(Long directorId, String sortBy) {
+        directorService.getById(directorId);
+        likeBuffer.flush();
 
-        return popularFilms.stream().map(FilmMapper::mapToFilmDto).collect(Collectors.toList());
+        return filmDbStorage.getFilmsByDirector(directorId, sortBy);
     }
 
-    public Collection<Film> searchFilms(String query, List<String> by) {
-        Collection<Film> films = filmDbStorage.searchFilms(query, by);
+    public Collection<Film> getCommonFilms(Long userId, Long friendId) {
+        likeBuffer.flushUsers(userId, friendId);
+        if (likeIndex.isReady() && leaderboard.isReady()) {
+            List<Long> commonIds = likeIndex.getCommonFilms(userId, friendId).stream()
+                    .mapToObj(Long::valueOf)
+                    .toList();
+            return filmDbStorage.getFilmsByIds(leaderboard.orderByPopularity(commonIds, pendingLikeDeltas()));
+        }
+        return filmDbStorage.getCommonFilms(userId, friendId);
+    }
 
-        if (!films.isEmpty()) {
-            List<Long> listFilmIds = films.stream().map(Film::getId).collect(Collectors.toList());
-            Map<Long, TreeSet<Genre>> genresForFilms = genreDbStorage.getGenresForFilms(listFilmIds);
-            Map<Long, Set<Director>> directorsForFilms = directorStorage.getDirectorsForFilms(listFilmIds);
+    // Поправка рейтинга на лайки из буфера отложенной записи: без индекса лайков её не посчитать,
+    // поэтому тогда буфер сбрасывается
+    private Map<Long, Long> pendingLikeDeltas() {
+        if (!likeBuffer.isEnabled()) {
+            return Map.of();
+        }
+        if (!likeIndex.isReady()) {
+            likeBuffer.flush();
+            return Map.of();
+        }
+        return likeIndex.likeDeltas(likeBuffer.pendingLikes());
+    }
 
-            films.forEach(film -> {
-                film.setGenres(genresForFilms.getOrDefault(film.getId(), new TreeSet<>()));
-                film.setDirectors(directorsForFilms.getOrDefault(film.getId(), new HashSet<>()));
-            });
+    // В режиме отложенной записи действие с лайком уходит в буфер; false — записать сразу
+    private boolean bufferLike(Long filmId, Long userId, boolean added) {
+        if (!likeBuffer.isEnabled()) {
+            return false;
         }
+        checkFilmExists(filmId);
+        return likeBuffer.offer(filmId, userId, added);
+    }
 
-        return films;
+    // Проверка ссылок фильма: рейтинг и жанры из справочника в памяти, режиссёры одним запросом.
+    // Найденные названия подставляются в фильм, поэтому ответ собирается без повторного чтения из БД.
+    private Film resolveReferences(Film film) {
+        Set<Long> directorIds = film.getDirectors().stream().map(Director::getId).collect(Collectors.toSet());
+        return resolveReferences(film, directorStorage.getDirectorsByIds(directorIds));
     }
 
-    public Collection<Film> getFilmsByDirector(Long directorId, String sortBy) {
-        directorService.getById(directorId);
+    // То же по заранее загруженным режиссёрам: при пакетном импорте они читаются одним запросом на пакет
+    Film resolveReferences(Film film, Map<Long, Director> directors) {
+        Integer mpaId = film.getMpa() != null ? film.getMpa().getId() : null;
+        film.setMpa(mpaDbStorage.getMpa(mpaId)
+                .orElseThrow(() -> new NotFoundException("Рейтинга с id " + mpaId + " нет.")));
 
-        Collection<Film> films = filmDbStorage.getFilmsByDirector(directorId, sortBy);
+        Set<Genre> genres = new TreeSet<>();
+        for (Genre genre : film.getGenres()) {
+            genres.add(genreDbStorage.getGenre(genre.getId())
+                    .orElseThrow(() -> new NotFoundException("Жанра с id " + genre.getId() + " нет.")));
+        }
+        film.setGenres(genres);
 
-        if (!films.isEmpty()) {
-            List<Long> listFilmIds = films.stream().map(Film::getId).collect(Collectors.toList());
-            Map<Long, TreeSet<Genre>> genresForFilms = genreDbStorage.getGenresForFilms(listFilmIds);
-            Map<Long, Set<Director>> directorsForFilms = directorStorage.getDirectorsForFilms(listFilmIds);
-            films.forEach(film -> {
-                film.setGenres(genresForFilms.getOrDefault(film.getId(), new TreeSet<>()));
-                film.setDirectors(directorsForFilms.getOrDefault(film.getId(), new HashSet<>()));
-            });
+        Set<Director> resolved = new HashSet<>();
+        for (Director director : film.getDirectors()) {
+            Director found = directors.get(director.getId());
+            if (found == null) {
+                throw new NotFoundException("Режиссёра с id " + director.getId() + " нет.");
+            }
+            resolved.add(found);
         }
-        return films;
+        film.setDirectors(resolved);
+        return film;
     }
 
-    public Collection<Film> getCommonFilms(Long userId, Long friendId) {
-        Collection<Film> commonFilms = filmDbStorage.getCommonFilms(userId, friendId);
-        if (commonFilms.isEmpty()) {
-            return new ArrayList<>();
-        }
-        List<Long> listFilmIds = commonFilms.stream().map(Film::getId).toList();
-        Map<Long, TreeSet<Genre>> genres = genreDbStorage.getGenresForFilms(listFilmIds);
-        commonFilms.forEach(film -> film.setGenres(genres.getOrDefault(film.getId(), new TreeSet<>())));
-        return commonFilms;
+    // Символы % и _ в запросе работают в LIKE как шаблоны, такие запросы выполняет БД
+    private static boolean hasLikeWildcards(String query) {
+        return query.indexOf('%') >= 0 || query.indexOf('_') >= 0;
     }
-}
\ No newline at end of file
+}
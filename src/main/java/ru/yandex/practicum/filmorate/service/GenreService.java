@@ -5,6 +5,7 @@ import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dal.GenreDbStorage;
 import ru.yandex.practicum.filmorate.dto.GenreDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.mapper.GenreMapper;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
 
@@ -15,9 +16,11 @@ import java.util.stream.Collectors;
 @Service
 public class GenreService {
     private final GenreStorage genreDbStorage;
+    private final ReferenceDataRegistry referenceData;
 
-    public GenreService(GenreDbStorage genreDbStorage) {
+    public GenreService(GenreDbStorage genreDbStorage, ReferenceDataRegistry referenceData) {
         this.genreDbStorage = genreDbStorage;
+        this.referenceData = referenceData;
     }
 
     public List<GenreDto> getAll() {
@@ -27,6 +30,11 @@ public class GenreService {
                 .collect(Collectors.toList());
     }
 
+    // Готовый JSON списка из справочника в памяти
+    public byte[] getAllJson() {
+        return referenceData.getGenresJson();
+    }
+
     public GenreDto getGenre(Integer genreId) {
         return genreDbStorage.getGenre(genreId).map(GenreMapper::mapToGenreDto).orElseThrow(() -> new NotFoundException("Жанр с ID " +
                 genreId + " не найден."));
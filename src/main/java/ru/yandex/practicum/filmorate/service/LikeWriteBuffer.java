@@ -0,0 +1,234 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Отложенная запись лайков для пиковой нагрузки (включается filmorate.likes.write-behind.enabled).
+ * Лайки и их снятие копятся в буфере, разбитом на полосы по пользователю: по каждой паре (фильм, пользователь)
+ * хранится только последнее действие, поэтому лайк и последующее снятие дают одну запись в likes.
+ * События ленты сохраняются все. Буфер сбрасывается пакетами по таймеру, при накоплении max-pending событий
+ * и при остановке приложения. Чтения не ждут общего сброса: рейтинг учитывает {@link #pendingLikes()} поверх
+ * индексов, а чтения своих лайков и ленты сбрасывают только полосы своих пользователей ({@link #flushUsers}).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikeWriteBuffer {
+
+    private final FilmStorage filmDbStorage;
+
+    @Value("${filmorate.likes.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${filmorate.likes.write-behind.max-pending:1000}")
+    private int maxPending;
+
+    @Value("${filmorate.likes.write-behind.stripes:16}")
+    private int stripeCount;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private Stripe[] stripes;
+    private volatile boolean closed;
+
+    @PostConstruct
+    public void init() {
+        stripes = new Stripe[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled && !closed;
+    }
+
+    // Кладёт действие в буфер; false — буфер закрыт и действие нужно записать сразу
+    public boolean offer(long filmId, long userId, boolean added) {
+        Key key = new Key(filmId, userId);
+        Stripe stripe = stripes[stripeIndex(userId)];
+        stripe.lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            LikeEvent event = new LikeEvent(filmId, userId, added, Instant.now().toEpochMilli());
+            stripe.states.put(key, event);
+            stripe.events.add(new Sequenced(sequence.incrementAndGet(), event));
+            stripe.pending.incrementAndGet();
+            pending.incrementAndGet();
+        } finally {
+            stripe.lock.unlock();
+        }
+        if (pending.get() >= maxPending) {
+            flush();
+        }
+        return true;
+    }
+
+    // Итоговые действия, ещё не записанные в БД, включая пакет, который пишется прямо сейчас
+    public List<LikeEvent> pendingLikes() {
+        if (!enabled || pending.get() == 0) {
+            return List.of();
+        }
+        List<LikeEvent> result = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            if (stripe.pending.get() == 0) {
+                continue;
+            }
+            stripe.lock.lock();
+            try {
+                Map<Key, LikeEvent> states = new HashMap<>(stripe.writing);
+                states.putAll(stripe.states);
+                result.addAll(states.values());
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes.write-behind.flush-interval-ms:50}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    // Сбрасывает накопленное в БД. Ждёт уже идущий сброс, поэтому после возврата
+    // все действия, поставленные в буфер до вызова, зафиксированы. Пустой буфер не берёт блокировок
+    public void flush() {
+        if (!enabled || pending.get() == 0) {
+            return;
+        }
+        flush(IntStream.range(0, stripes.length).toArray());
+    }
+
+    // Сбрасывает только полосы указанных пользователей: их действия зафиксированы после возврата,
+    // а чужие лайки остаются в буфере до очередного сброса
+    public void flushUsers(Long... userIds) {
+        if (!enabled) {
+            return;
+        }
+        int[] selected = Arrays.stream(userIds)
+                .mapToInt(this::stripeIndex)
+                .filter(index -> stripes[index].pending.get() > 0)
+                .distinct()
+                .sorted()
+                .toArray();
+        if (selected.length > 0) {
+            flush(selected);
+        }
+    }
+
+    // При остановке буфер закрывается для новых действий и сбрасывается
+    @PreDestroy
+    public void close() {
+        closed = true;
+        flush();
+    }
+
+    // Полосы блокируются для сброса по возрастанию номера, поэтому общий сброс и сброс полос
+    // отдельных пользователей не мешают друг другу. Счётчики уменьшаются только после записи
+    private void flush(int[] selected) {
+        for (int index : selected) {
+            stripes[index].flushLock.lock();
+        }
+        int[] drained = new int[selected.length];
+        try {
+            Map<Key, LikeEvent> states = new HashMap<>();
+            List<Sequenced> events = new ArrayList<>();
+            for (int i = 0; i < selected.length; i++) {
+                Stripe stripe = stripes[selected[i]];
+                stripe.lock.lock();
+                try {
+                    drained[i] = stripe.events.size();
+                    states.putAll(stripe.states);
+                    events.addAll(stripe.events);
+                    stripe.writing.putAll(stripe.states);
+                    stripe.states.clear();
+                    stripe.events.clear();
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            if (!events.isEmpty()) {
+                events.sort(Comparator.comparingLong(Sequenced::sequence));
+                write(states, events.stream().map(Sequenced::event).toList());
+            }
+        } finally {
+            for (int i = selected.length - 1; i >= 0; i--) {
+                Stripe stripe = stripes[selected[i]];
+                stripe.lock.lock();
+                try {
+                    stripe.writing.clear();
+                } finally {
+                    stripe.lock.unlock();
+                }
+                stripe.pending.addAndGet(-drained[i]);
+                pending.addAndGet(-drained[i]);
+                stripe.flushLock.unlock();
+            }
+        }
+    }
+
+    private int stripeIndex(long userId) {
+        return Math.floorMod(Long.hashCode(userId), stripes.length);
+    }
+
+    private void write(Map<Key, LikeEvent> states, List<LikeEvent> events) {
+        try {
+            filmDbStorage.applyLikes(states.values(), events);
+            log.debug("Записано {} событий лайков, {} пар.", events.size(), states.size());
+        } catch (DataAccessException e) {
+            // Пакет откатился целиком (например, фильм удалён): пары записываются по одной
+            log.warn("Пакет лайков из {} событий не записан, запись по одному: {}", events.size(), e.getMessage());
+            Map<Key, List<LikeEvent>> eventsByKey = new LinkedHashMap<>();
+            events.forEach(event -> eventsByKey
+                    .computeIfAbsent(new Key(event.filmId(), event.userId()), k -> new ArrayList<>()).add(event));
+            eventsByKey.forEach((key, keyEvents) -> {
+                try {
+                    filmDbStorage.applyLikes(List.of(states.get(key)), keyEvents);
+                } catch (DataAccessException ex) {
+                    log.warn("Лайк фильма {} от пользователя {} отброшен: {}", key.filmId(), key.userId(),
+                            ex.getMessage());
+                }
+            });
+        }
+    }
+
+    private record Key(long filmId, long userId) {
+    }
+
+    private record Sequenced(long sequence, LikeEvent event) {
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ReentrantLock flushLock = new ReentrantLock();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final Map<Key, LikeEvent> states = new HashMap<>();
+        private final Map<Key, LikeEvent> writing = new HashMap<>();
+        private final List<Sequenced> events = new ArrayList<>();
+    }
+}
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LikesCountReconciliationJob {
+
+    private final FilmStorage filmDbStorage;
+    private final PopularityLeaderboard leaderboard;
+    private final FilmSuggestIndex suggestIndex;
+    private final VersionRegistry versions;
+
+    // Первый запуск заполняет счётчик в базах, созданных до его появления. Он идёт после загрузки рейтинга
+    // и дерева подсказок, поэтому исправленные счётчики всегда доходят до них.
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onApplicationReady() {
+        reconcile();
+    }
+
+    // Периодически исправляет расхождения films.likes_count с таблицей likes
+    // и перезагружает рейтинг и дерево подсказок, если лайки в рейтинге разошлись со счётчиками в БД
+    @Scheduled(initialDelayString = "${filmorate.likes.reconcile-interval-ms:300000}",
+            fixedDelayString = "${filmorate.likes.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        int fixed = filmDbStorage.reconcileLikesCount();
+        if (fixed > 0) {
+            log.warn("Исправлен счётчик лайков у {} фильмов.", fixed);
+        } else {
+            log.debug("Счётчики лайков согласованы с таблицей likes.");
+        }
+        boolean changed = fixed > 0;
+        if (leaderboard.isReady()) {
+            int drift = fixed > 0 ? 0 : leaderboard.countDrift(filmDbStorage.getLikesCounts());
+            if (drift > 0) {
+                log.warn("Рейтинг популярности разошёлся со счётчиками лайков у {} фильмов, перезагрузка.", drift);
+            }
+            if (fixed > 0 || drift > 0) {
+                leaderboard.load();
+                changed = true;
+            }
+        }
+        if (changed && suggestIndex.isReady()) {
+            suggestIndex.load();
+        }
+        if (changed) {
+            versions.onPopularityChanged();
+        }
+    }
+}
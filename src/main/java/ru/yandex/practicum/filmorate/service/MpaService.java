@@ -5,6 +5,7 @@ import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dal.MpaDbStorage;
 import ru.yandex.practicum.filmorate.dto.MpaDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.mapper.MpaMapper;
 import ru.yandex.practicum.filmorate.storage.MpaStorage;
 
@@ -15,9 +16,11 @@ import java.util.stream.Collectors;
 @Service
 public class MpaService {
     private final MpaStorage mpaDbStorage;
+    private final ReferenceDataRegistry referenceData;
 
-    public MpaService(MpaDbStorage mpaDbStorage) {
+    public MpaService(MpaDbStorage mpaDbStorage, ReferenceDataRegistry referenceData) {
         this.mpaDbStorage = mpaDbStorage;
+        this.referenceData = referenceData;
     }
 
     public List<MpaDto> getAll() {
@@ -27,6 +30,11 @@ public class MpaService {
                 .collect(Collectors.toList());
     }
 
+    // Готовый JSON списка из справочника в памяти
+    public byte[] getAllJson() {
+        return referenceData.getMpaJson();
+    }
+
     public MpaDto getMpa(Integer mpaId) {
         return mpaDbStorage.getMpa(mpaId).map(MpaMapper::mapToMpaDto).orElseThrow(() -> new NotFoundException("Рейтинг с ID " +
                 mpaId + " не найден."));
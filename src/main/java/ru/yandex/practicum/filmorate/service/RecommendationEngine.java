@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Рекомендации на основе похожих пользователей.
+ * Соседи выбираются по коэффициенту Жаккара между множествами лайков, а фильмы, которые пользователь
+ * ещё не оценил, ранжируются по сумме сходства соседей, которым они понравились.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RecommendationEngine {
+    private static final Comparator<Neighbour> BY_SIMILARITY = Comparator.comparingDouble(Neighbour::similarity)
+            .thenComparing(Comparator.comparingInt(Neighbour::userId).reversed());
+
+    private final LikeIndex likeIndex;
+
+    @Value("${filmorate.recommendations.neighbourhood-size:30}")
+    private int neighbourhoodSize;
+
+    @Value("${filmorate.recommendations.latency-budget-ms:50}")
+    private long latencyBudgetMs;
+
+    @Value("${filmorate.recommendations.max-results:50}")
+    private int maxResults;
+
+    public boolean isReady() {
+        return likeIndex.isReady();
+    }
+
+    // Идентификаторы рекомендованных фильмов в порядке убывания веса
+    public List<Long> recommend(Long userId) {
+        long deadline = System.nanoTime() + latencyBudgetMs * 1_000_000;
+        return likeIndex.read(view -> {
+            BitSet mine = view.films(Math.toIntExact(userId));
+            if (mine.isEmpty()) {
+                return List.of();
+            }
+            List<Neighbour> neighbours = findNeighbours(view, Math.toIntExact(userId), mine, deadline);
+            return rank(view, mine, neighbours);
+        });
+    }
+
+    // Кандидаты — пользователи, лайкнувшие хотя бы один фильм пользователя; в окрестность попадают самые похожие
+    private List<Neighbour> findNeighbours(LikeIndex.View view, int userId, BitSet mine, long deadline) {
+        BitSet candidates = new BitSet();
+        mine.stream().forEach(filmId -> candidates.or(view.users(filmId)));
+        candidates.clear(userId);
+
+        PriorityQueue<Neighbour> best = new PriorityQueue<>(BY_SIMILARITY);
+        int scanned = 0;
+        for (int other = candidates.nextSetBit(0); other >= 0; other = candidates.nextSetBit(other + 1)) {
+            if ((++scanned & 63) == 0 && System.nanoTime() > deadline) {
+                log.debug("Превышен бюджет времени рекомендаций для пользователя {}, просмотрено {} соседей.",
+                        userId, scanned);
+                break;
+            }
+            BitSet theirs = view.films(other);
+            BitSet common = (BitSet) mine.clone();
+            common.and(theirs);
+            int intersection = common.cardinality();
+            if (intersection == 0 || intersection == theirs.cardinality()) {
+                continue;
+            }
+            double similarity = (double) intersection / (mine.cardinality() + theirs.cardinality() - intersection);
+            best.add(new Neighbour(other, similarity));
+            if (best.size() > neighbourhoodSize) {
+                best.poll();
+            }
+        }
+        List<Neighbour> result = new ArrayList<>(best);
+        result.sort(BY_SIMILARITY.reversed());
+        return result;
+    }
+
+    // Вес фильма — сумма сходства соседей, которым он понравился
+    private List<Long> rank(LikeIndex.View view, BitSet mine, List<Neighbour> neighbours) {
+        Map<Integer, Double> scores = new HashMap<>();
+        for (Neighbour neighbour : neighbours) {
+            BitSet unseen = (BitSet) view.films(neighbour.userId()).clone();
+            unseen.andNot(mine);
+            unseen.stream().forEach(filmId -> scores.merge(filmId, neighbour.similarity(), Double::sum));
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(maxResults)
+                .map(entry -> entry.getKey().longValue())
+                .toList();
+    }
+
+    private record Neighbour(int userId, double similarity) {
+    }
+}
@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Объединение одинаковых одновременных запросов (single-flight): первый вызов с данным адресом и аргументами
+ * выполняет вычисление, вызовы, пришедшие до его завершения, ждут и получают тот же результат или то же исключение.
+ * Результаты не кэшируются: после завершения вычисления следующий вызов выполняется заново.
+ * В ключ входит эпоха популярности из {@link VersionRegistry}, поэтому запрос, пришедший после лайка или изменения
+ * фильма, не присоединяется к вычислению, начатому до него. Результат общий для всех ожидавших и не изменяется.
+ * Адреса включаются списком filmorate.coalescing.endpoints. Метрика filmorate.coalescing.requests с тегами
+ * endpoint и result: executed — вычисления, coalesced — сэкономленные обращения к БД.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RequestCoalescer {
+    public static final String POPULAR = "popular";
+    public static final String SEARCH = "search";
+    public static final String RECOMMENDATIONS = "recommendations";
+
+    private final VersionRegistry versions;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${filmorate.coalescing.endpoints:popular,search,recommendations}")
+    private Set<String> endpoints;
+
+    private final Map<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter> executed = new ConcurrentHashMap<>();
+    private final Map<String, Counter> coalesced = new ConcurrentHashMap<>();
+    private MeterRegistry registry;
+
+    @PostConstruct
+    public void init() {
+        registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+        registry.gauge("filmorate.coalescing.in-flight", inFlight, Map::size);
+        log.info("Объединение одинаковых запросов включено для адресов: {}.", endpoints);
+    }
+
+    public boolean isEnabled(String endpoint) {
+        return endpoints.contains(endpoint);
+    }
+
+    // Выполнение вызова или ожидание уже идущего вызова с теми же аргументами
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String endpoint, List<?> args, Supplier<T> call) {
+        if (!isEnabled(endpoint)) {
+            return call.get();
+        }
+        Key key = new Key(endpoint, args, versions.popularTag());
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            counter(coalesced, endpoint, "coalesced").increment();
+            return (T) await(running);
+        }
+        counter(executed, endpoint, "executed").increment();
+        try {
+            T result = call.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // Ожидающий получает исключение вычисления без обёртки CompletionException
+    private static Object await(CompletableFuture<Object> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Counter counter(Map<String, Counter> counters, String endpoint, String result) {
+        return counters.computeIfAbsent(endpoint, name -> Counter.builder("filmorate.coalescing.requests")
+                .tag("endpoint", name)
+                .tag("result", result)
+                .register(registry));
+    }
+
+    private record Key(String endpoint, List<?> args, String version) {
+    }
+}
@@ -9,6 +9,7 @@ import ru.yandex.practicum.filmorate.dal.UserDbStorage;
 import ru.yandex.practicum.filmorate.dto.NewReviewDto;
 import ru.yandex.practicum.filmorate.dto.ReviewDto;
 import ru.yandex.practicum.filmorate.dto.UpdateReviewDto;
+import ru.yandex.practicum.filmorate.exception.IdValidationException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.ReviewMapper;
 import ru.yandex.practicum.filmorate.model.Review;
@@ -26,15 +27,23 @@ public class ReviewService {
     private final FilmDbStorage filmDbStorage;
 
     public Collection<ReviewDto> getReviews(Long filmId, int count) {
+        return getReviews(filmId, null, null, count);
+    }
+
+    // Постраничная выдача по курсору: afterUseful и afterId берутся из последнего отзыва предыдущей страницы
+    public Collection<ReviewDto> getReviews(Long filmId, Integer afterUseful, Long afterId, int count) {
+        if ((afterUseful == null) != (afterId == null)) {
+            throw new IdValidationException("Параметры afterUseful и afterId задаются вместе");
+        }
         if (filmId != null) {
             if (!filmDbStorage.exists(filmId)) {
                 throw new NotFoundException("Неверно задан id фильма");
             }
-            return reviewDbStorage.getAllReviewsByFilmId(filmId, count).stream()
+            return reviewDbStorage.getAllReviewsByFilmId(filmId, afterUseful, afterId, count).stream()
                     .map(reviewMapper::mapToDto)
                     .collect(Collectors.toList());
         }
-        return reviewDbStorage.getAllReviews(count).stream()
+        return reviewDbStorage.getAllReviews(afterUseful, afterId, count).stream()
                 .map(reviewMapper::mapToDto)
                 .collect(Collectors.toList());
     }
@@ -77,36 +86,32 @@ public class ReviewService {
     }
 
     public void addLike(Long reviewId, Long userId) {
-        if (reviewDbStorage.existsDislike(reviewId, userId)) {
-            removeDislike(reviewId, userId);
-        }
-        try {
-            reviewDbStorage.addLike(reviewId, userId);
-        } catch (DataIntegrityViolationException e) {
+        if (!vote(reviewId, userId, 1)) {
             throw new IllegalStateException("Пользователь уже поставил лайк этому отзыву");
         }
-
     }
 
     public void removeLike(Long reviewId, Long userId) {
-        reviewDbStorage.deleteLike(reviewId, userId);
+        reviewDbStorage.removeVote(reviewId, userId, 1);
     }
 
     public void addDislike(Long reviewId, Long userId) {
-
-        if (reviewDbStorage.existsLike(reviewId, userId)) {
-            removeLike(reviewId, userId);
-        }
-        try {
-            reviewDbStorage.addDislike(reviewId, userId);
-        } catch (DataIntegrityViolationException e) {
+        if (!vote(reviewId, userId, -1)) {
             throw new IllegalStateException("Пользователь уже поставил дизлайк этому отзыву");
         }
-
     }
 
     public void removeDislike(Long reviewId, Long userId) {
-        reviewDbStorage.deleteDislike(reviewId, userId);
+        reviewDbStorage.removeVote(reviewId, userId, -1);
+    }
+
+    // Лайк заменяет дизлайк и наоборот одним запросом MERGE
+    private boolean vote(Long reviewId, Long userId, int vote) {
+        try {
+            return reviewDbStorage.vote(reviewId, userId, vote);
+        } catch (DataIntegrityViolationException e) {
+            throw new NotFoundException("Пользователь с id: " + userId + " не найден");
+        }
     }
 
 }
\ No newline at end of file
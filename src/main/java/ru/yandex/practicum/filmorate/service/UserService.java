@@ -10,14 +10,13 @@ import ru.yandex.practicum.filmorate.dto.UserDto;
 import ru.yandex.practicum.filmorate.exception.DataAlreadyExistException;
 import ru.yandex.practicum.filmorate.exception.IdValidationException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.feed.FeedEventPublisher;
 import ru.yandex.practicum.filmorate.mapper.FeedMapper;
 import ru.yandex.practicum.filmorate.mapper.UserMapper;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.FeedStorage;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
-import ru.yandex.practicum.filmorate.storage.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.util.*;
@@ -30,7 +29,11 @@ public class UserService {
     private final UserStorage userDbStorage;
     private final FeedStorage feedDbStorage;
     private final FilmStorage filmDbStorage;
-    private final GenreStorage genreDbStorage;
+    private final RecommendationEngine recommendationEngine;
+    private final LikeWriteBuffer likeBuffer;
+    private final FeedEventPublisher feedPublisher;
+    private final VersionRegistry versions;
+    private final RequestCoalescer coalescer;
 
     public List<UserDto> getUsers() {
         return userDbStorage.getAll()
@@ -85,6 +88,8 @@ public class UserService {
         User userForDelete = userDbStorage.getUser(userId).orElseThrow(() -> new NotFoundException("Пользователь с ID " +
                 userId + " не найден."));
         userForDelete = userDbStorage.deleteUser(userForDelete);
+        // лайки удалённого пользователя снимаются
+        versions.onPopularityChanged();
         return UserMapper.mapToUserDto(userForDelete);
     }
 
@@ -93,8 +98,10 @@ public class UserService {
         log.info("Пользователи теперь друзья.");
     }
 
-    public List<Optional<User>> getFriends(Long userId) {
-        return userDbStorage.getUserFriends(userId);
+    public List<UserDto> getFriends(Long userId, Long afterId, Integer limit) {
+        return userDbStorage.getUserFriends(userId, afterId, limit).stream()
+                .map(UserMapper::mapToUserDto)
+                .toList();
     }
 
     public void deleteFriend(Long userId, Long friendId) {
@@ -102,8 +109,10 @@ public class UserService {
         log.info("Пользователи теперь не друзья.");
     }
 
-    public List<Optional<User>> getSameFriends(Long userId, Long otherId) {
-        return userDbStorage.getSameFriends(userId, otherId);
+    public List<UserDto> getSameFriends(Long userId, Long otherId, Long afterId, Integer limit) {
+        return userDbStorage.getSameFriends(userId, otherId, afterId, limit).stream()
+                .map(UserMapper::mapToUserDto)
+                .toList();
     }
 
     public void confirmFriend(Long userId, Long friendId) {
@@ -115,23 +124,17 @@ public class UserService {
         if (!existsUser) {
             throw new NotFoundException("Пользователя с таким id не существует");
         }
+        likeBuffer.flushUsers(userId);
+        feedPublisher.flush();
         return feedDbStorage.getFeedUser(userId).stream().map(FeedMapper::mapToFeedDto).collect(Collectors.toList());
     }
 
     public Collection<Film> getRecommendations(Long userId) {
         userDbStorage.existsUserById(userId);
-        Collection<Film> recFilms = filmDbStorage.getRecommendations(userId);
-
-        if (recFilms.isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        List<Long> listFilmIds = recFilms.stream().map(Film::getId).collect(Collectors.toList());
-
-        Map<Long, TreeSet<Genre>> genresForFilms = genreDbStorage.getGenresForFilms(listFilmIds);
-
-        recFilms.forEach(film -> film.setGenres(genresForFilms.getOrDefault(film.getId(), new TreeSet<>())));
-
-        return recFilms;
+        likeBuffer.flushUsers(userId);
+        return coalescer.execute(RequestCoalescer.RECOMMENDATIONS, List.of(userId),
+                () -> recommendationEngine.isReady()
+                        ? filmDbStorage.getFilmsByIds(recommendationEngine.recommend(userId))
+                        : filmDbStorage.getRecommendations(userId));
     }
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.AfterCommit;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Версии данных для условных GET-запросов (ETag / If-None-Match).
+ * Все версии берутся из одного возрастающего счётчика: у фильма — номер последнего изменения фильма,
+ * у режиссёров — номер последнего изменения любого режиссёра, эпоха популярности растёт при лайках
+ * и при любых изменениях фильмов и режиссёров, попадающих в выдачу /films/popular.
+ * Версии жанров и рейтингов MPA хранит снимок {@link ReferenceDataRegistry}; карточки фильмов и популярные
+ * содержат их названия, поэтому эти версии входят и в ETag фильма и популярных.
+ * Счётчики живут в памяти, поэтому в ETag входит поколение — время запуска приложения:
+ * после перезапуска старые ETag не совпадают с новыми.
+ * Версия повышается после фиксации изменения и после сброса кэшей, иначе новый ETag мог бы достаться старому ответу.
+ */
+@Component
+@RequiredArgsConstructor
+public class VersionRegistry {
+    private final ReferenceDataRegistry referenceData;
+
+    private final String generation = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, Long> filmVersions = new ConcurrentHashMap<>();
+    private final AtomicLong deletedVersion = new AtomicLong();
+    private final AtomicLong directorsVersion = new AtomicLong();
+    private final AtomicLong popularityEpoch = new AtomicLong();
+
+    // Фильм создан или изменён
+    public void onFilmChanged(long filmId) {
+        AfterCommit.run(() -> {
+            long version = sequence.incrementAndGet();
+            filmVersions.merge(filmId, version, Math::max);
+            popularityEpoch.accumulateAndGet(version, Math::max);
+        });
+    }
+
+    // Запись удалённого фильма убирается, а фильмы без записи получают версию последнего удаления:
+    // старый ETag удалённого фильма не совпадёт, и карта версий не растёт от удалений
+    public void onFilmDeleted(long filmId) {
+        AfterCommit.run(() -> {
+            long version = sequence.incrementAndGet();
+            deletedVersion.accumulateAndGet(version, Math::max);
+            filmVersions.remove(filmId);
+            popularityEpoch.accumulateAndGet(version, Math::max);
+        });
+    }
+
+    public void onDirectorsChanged() {
+        AfterCommit.run(() -> {
+            long version = sequence.incrementAndGet();
+            directorsVersion.accumulateAndGet(version, Math::max);
+            popularityEpoch.accumulateAndGet(version, Math::max);
+        });
+    }
+
+    // Изменились лайки или состав каталога без изменения уже выданных карточек фильмов
+    public void onPopularityChanged() {
+        AfterCommit.run(() -> popularityEpoch.accumulateAndGet(sequence.incrementAndGet(), Math::max));
+    }
+
+    // Карточка фильма зависит от самого фильма, от имён его режиссёров и от названий жанров и рейтинга
+    public String filmTag(long filmId) {
+        long version = Math.max(filmVersions.getOrDefault(filmId, deletedVersion.get()), directorsVersion.get());
+        return tag("film-" + filmId, version + "." + referenceVersions());
+    }
+
+    public String popularTag() {
+        return tag("popular", popularityEpoch.get() + "." + referenceVersions());
+    }
+
+    public String genresTag() {
+        return tag("genres", Long.toString(referenceData.getGenresVersion()));
+    }
+
+    public String mpaTag() {
+        return tag("mpa", Long.toString(referenceData.getMpaVersion()));
+    }
+
+    private String referenceVersions() {
+        return referenceData.getGenresVersion() + "." + referenceData.getMpaVersion();
+    }
+
+    private String tag(String resource, String version) {
+        return "\"" + resource + "-" + generation + "-" + version + "\"";
+    }
+}
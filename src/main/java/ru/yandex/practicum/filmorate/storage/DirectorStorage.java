@@ -2,10 +2,10 @@ package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Director;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 
 public interface DirectorStorage {
     List<Director> getAll();
@@ -18,7 +18,5 @@ public interface DirectorStorage {
 
     void delete(Long id);
 
-    Set<Director> getFilmDirectors(Long filmId);
-
-    Map<Long, Set<Director>> getDirectorsForFilms(List<Long> filmIds);
+    Map<Long, Director> getDirectorsByIds(Collection<Long> ids);
 }
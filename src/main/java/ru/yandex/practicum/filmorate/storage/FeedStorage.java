@@ -1,9 +1,19 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface FeedStorage {
     Collection<Feed> getFeedUser(Long userId);
-}
\ No newline at end of file
+
+    void addEvents(List<FeedEvent> events);
+
+    void addToOutbox(List<FeedEvent> events);
+
+    int relayOutbox(int limit);
+
+    int countOutbox();
+}
@@ -1,31 +1,48 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     Collection<Film> getAll();
 
+    List<Film> getFilms(Long afterId, Integer limit);
+
+    void streamFilms(Long afterId, Consumer<Film> consumer);
+
     Film create(Film film);
 
+    List<Film> createAll(List<Film> films);
+
     Film update(Film film);
 
     void deleteFilm(Long filmId);
 
     Optional<Film> getFilm(Long filmId);
 
+    List<Film> getFilmsByIds(List<Long> filmIds);
+
     void addLike(Long filmId, Long userId);
 
     void deleteLike(Long filmId, Long userId);
 
+    void applyLikes(Collection<LikeEvent> likes, List<LikeEvent> feedEvents);
+
+    boolean exists(Long filmId);
+
     Collection<Film> getPopularFilms(Integer count);
 
     Collection<Film> searchFilms(String query, List<String> by);
 
+    List<Film> suggestFilms(String prefix, int limit);
+
     Collection<Film> getFilmsByDirector(Long directorId, String sortBy);
 
     Collection<Film> getRecommendations(Long userId);
@@ -37,4 +54,8 @@ public interface FilmStorage {
     Collection<Film> getPopularFilmsByGenreAndYear(Integer count, Integer genre, Integer year);
 
     Collection<Film> getCommonFilms(Long userId, Long friendId);
+
+    int reconcileLikesCount();
+
+    Map<Long, Long> getLikesCounts();
 }
\ No newline at end of file
@@ -2,14 +2,11 @@ package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Genre;
 
-import java.util.*;
+import java.util.List;
+import java.util.Optional;
 
 public interface GenreStorage {
     List<Genre> getAll();
 
     Optional<Genre> getGenre(Integer genreId);
-
-    Set<Genre> getFilmGenres(Long filmId);
-
-    Map<Long, TreeSet<Genre>> getGenresForFilms(List<Long> filmsId);
 }
\ No newline at end of file
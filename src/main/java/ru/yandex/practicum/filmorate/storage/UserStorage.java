@@ -21,9 +21,9 @@ public interface UserStorage {
 
     Optional<User> getUser(Long userId);
 
-    List<Optional<User>> getUserFriends(Long userId);
+    List<User> getUserFriends(Long userId, Long afterId, Integer limit);
 
-    List<Optional<User>> getSameFriends(Long userId, Long otherId);
+    List<User> getSameFriends(Long userId, Long otherId, Long afterId, Integer limit);
 
     Optional<User> findByEmail(String email);
 
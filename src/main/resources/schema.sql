@@ -27,9 +27,17 @@
     description VARCHAR(255) NOT NULL,
     release_date DATE NOT NULL,
     duration INTEGER NOT NULL,
-    MPA_id INTEGER REFERENCES mpa ON DELETE SET NULL
+    MPA_id INTEGER REFERENCES mpa ON DELETE SET NULL,
+    likes_count INTEGER DEFAULT 0 NOT NULL,
+    release_year INTEGER GENERATED ALWAYS AS (EXTRACT(YEAR FROM release_date))
     );
 
+    -- миграция файловых БД, созданных до появления столбцов
+    ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count INTEGER DEFAULT 0 NOT NULL;
+    ALTER TABLE films ADD COLUMN IF NOT EXISTS release_year INTEGER GENERATED ALWAYS AS (EXTRACT(YEAR FROM release_date));
+    CREATE INDEX IF NOT EXISTS idx_films_likes_count ON films(likes_count DESC, film_id);
+    CREATE INDEX IF NOT EXISTS idx_films_release_year ON films(release_year, likes_count DESC, film_id);
+
     CREATE TABLE IF NOT EXISTS genre (
     id INT PRIMARY KEY,
     name VARCHAR(40) NOT NULL
@@ -41,26 +49,29 @@
     film_id BIGINT NOT NULL REFERENCES films(film_id) ON DELETE CASCADE,
     positive boolean NOT NULL,
     content VARCHAR NOT NULL,
+    useful INTEGER DEFAULT 0 NOT NULL,
     CONSTRAINT content_length_check CHECK (LENGTH(content) <= 200),
     CONSTRAINT unique_review_per_user_and_film UNIQUE (user_id, film_id)
     );
 
     CREATE INDEX IF NOT EXISTS idx_reviews_film_id ON reviews(film_id);
 
-    CREATE TABLE IF NOT EXISTS review_likes (
-    review_id BIGINT REFERENCES reviews(id) ON DELETE CASCADE,
-    user_id BIGINT REFERENCES users ON DELETE CASCADE,
-    CONSTRAINT one_user_one_like UNIQUE (review_id, user_id)
+    -- оценка отзыва пользователем: 1 — полезно, -1 — бесполезно
+    CREATE TABLE IF NOT EXISTS review_votes (
+    review_id BIGINT NOT NULL REFERENCES reviews(id) ON DELETE CASCADE,
+    user_id BIGINT NOT NULL REFERENCES users ON DELETE CASCADE,
+    vote SMALLINT NOT NULL,
+    CONSTRAINT pk_review_votes PRIMARY KEY (review_id, user_id),
+    CONSTRAINT review_vote_check CHECK (vote IN (-1, 1))
     );
 
-    CREATE TABLE IF NOT EXISTS review_dislikes (
-    review_id BIGINT REFERENCES reviews(id) ON DELETE CASCADE,
-    user_id BIGINT REFERENCES users ON DELETE CASCADE,
-    CONSTRAINT one_user_one_dislike UNIQUE (review_id, user_id)
-    );
+    -- миграция файловых БД: полезность отзыва хранится в reviews.useful,
+    -- оценки из старых review_likes и review_dislikes переносит SchemaMigrations
+    ALTER TABLE reviews ADD COLUMN IF NOT EXISTS useful INTEGER DEFAULT 0 NOT NULL;
 
-    CREATE INDEX IF NOT EXISTS idx_review_likes_review_id ON review_likes(review_id);
-    CREATE INDEX IF NOT EXISTS idx_review_dislikes_review_id ON review_dislikes(review_id);
+    -- списки отзывов по полезности читаются прямо из индексов, без сортировки всей выборки
+    CREATE INDEX IF NOT EXISTS idx_reviews_film_useful ON reviews(film_id, useful DESC, id);
+    CREATE INDEX IF NOT EXISTS idx_reviews_useful ON reviews(useful DESC, id);
 
 
     CREATE TABLE IF NOT EXISTS film_genre (
@@ -69,12 +80,17 @@
     genre_id INTEGER REFERENCES genre ON DELETE CASCADE
     );
 
+    CREATE INDEX IF NOT EXISTS idx_film_genre_genre_film ON film_genre(genre_id, film_id);
+
     CREATE TABLE IF NOT EXISTS likes (
-    id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
-    film_id INTEGER REFERENCES films ON DELETE CASCADE,
-    user_id INTEGER REFERENCES users ON DELETE CASCADE
+    film_id INTEGER NOT NULL REFERENCES films ON DELETE CASCADE,
+    user_id INTEGER NOT NULL REFERENCES users ON DELETE CASCADE,
+    CONSTRAINT pk_likes PRIMARY KEY (film_id, user_id)
     );
 
+    -- старые файловые БД с суррогатным id лайка переводит на ключ (film_id, user_id) SchemaMigrations
+    CREATE INDEX IF NOT EXISTS idx_likes_user_film ON likes(user_id, film_id);
+
     CREATE TABLE IF NOT EXISTS friends (
     id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
     user_id INTEGER REFERENCES users ON DELETE CASCADE,
@@ -82,6 +98,8 @@
     friend_confirm BOOLEAN DEFAULT FALSE
     );
 
+    CREATE INDEX IF NOT EXISTS idx_friends_user_friend ON friends(user_id, friend_id);
+
     CREATE TABLE IF NOT EXISTS directors (
     id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
     name VARCHAR(255) NOT NULL
@@ -100,4 +118,14 @@
     entity_id INTEGER NOT NULL,
     event_type_id INTEGER REFERENCES event_type ON DELETE CASCADE,
     event_operation_id INTEGER REFERENCES operations ON DELETE CASCADE
-    );
\ No newline at end of file
+    );
+
+    -- события ленты, записанные в транзакции изменения и ещё не перенесённые в feeds (filmorate.feed.mode=outbox)
+    CREATE TABLE IF NOT EXISTS feed_outbox (
+    id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    user_id INTEGER NOT NULL,
+    timestamp BIGINT NOT NULL,
+    entity_id INTEGER NOT NULL,
+    event_type_id INTEGER NOT NULL,
+    event_operation_id INTEGER NOT NULL
+    );
@@ -3,35 +3,77 @@ package ru.yandex.practicum.filmorate;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.jdbc.Sql;
 import ru.yandex.practicum.filmorate.dal.*;
+import ru.yandex.practicum.filmorate.dal.FeedDbStorage;
 import ru.yandex.practicum.filmorate.dal.mapper.*;
+import ru.yandex.practicum.filmorate.dal.mapper.FeedRowMapper;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.FilmImportResultDto;
+import ru.yandex.practicum.filmorate.dto.NewFilmRequest;
+import ru.yandex.practicum.filmorate.dto.UpdateFilmRequest;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.feed.FeedEventPublisher;
+import ru.yandex.practicum.filmorate.index.ExistenceIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.DirectorService;
+import ru.yandex.practicum.filmorate.service.FilmCache;
+import ru.yandex.practicum.filmorate.service.FilmImportService;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.service.RequestCoalescer;
+import ru.yandex.practicum.filmorate.service.VersionRegistry;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@JdbcTest
+@JdbcTest(properties = {"filmorate.leaderboard.enabled=false", "filmorate.likes-index.enabled=false",
+        "filmorate.search-index.enabled=false", "filmorate.suggest.enabled=false",
+        "filmorate.film-cache.enabled=false", "filmorate.friends-graph.enabled=false",
+        "filmorate.sql.statement-counter.enabled=true"})
 @AutoConfigureTestDatabase
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @Import({UserDbStorage.class, FilmDbStorage.class, GenreDbStorage.class, DirectorDbStorage.class, MpaDbStorage.class,
-        UserRowMapper.class, FilmRowMapper.class, GenreRowMapper.class, MpaRowMapper.class, DirectorRowMapper.class, FilmService.class, DirectorService.class})
+        UserRowMapper.class, FilmRowMapper.class, FilmHydrator.class, GenreRowMapper.class, MpaRowMapper.class, DirectorRowMapper.class, FilmService.class, DirectorService.class, LikeWriteBuffer.class,
+        FilmCache.class, VersionRegistry.class,
+        RequestCoalescer.class, FilmImportService.class,
+        PopularityLeaderboard.class, LikeIndex.class, ExistenceIndex.class, FriendGraph.class,
+        FilmSearchIndex.class, FilmSuggestIndex.class,
+        ReferenceDataRegistry.class, FeedEventPublisher.class, FeedDbStorage.class, FeedRowMapper.class, StatementCountingDataSourceConfig.class})
 class FilmorateDbApplicationTests {
     private final UserDbStorage userDbStorage;
     private final FilmDbStorage filmDbStorage;
     private final DirectorDbStorage directorDbStorage;
     private final FilmService filmService;
+    private final FilmImportService filmImportService;
+    private final ReferenceDataRegistry referenceData;
+    private final JdbcTemplate jdbc;
 
     private User testUser;
     private Film testFilm;
@@ -99,12 +141,14 @@ class FilmorateDbApplicationTests {
         userDbStorage.saveUser(newTestUser);
 
         userDbStorage.addFriend(updateUser.getId(), newTestUser.getId());
-        List<Optional<User>> newListFriends = userDbStorage.getUserFriends(updateUser.getId());
+        List<User> newListFriends = userDbStorage.getUserFriends(updateUser.getId(), null, null);
 
         assertEquals(1, newListFriends.size());
+        assertEquals(newTestUser.getLogin(), newListFriends.get(0).getLogin());
+        assertTrue(userDbStorage.getUserFriends(updateUser.getId(), newTestUser.getId(), 10).isEmpty());
 
         userDbStorage.deleteFriend(updateUser.getId(), newTestUser.getId());
-        newListFriends = userDbStorage.getUserFriends(updateUser.getId());
+        newListFriends = userDbStorage.getUserFriends(updateUser.getId(), null, null);
 
         assertEquals(0, newListFriends.size());
     }
@@ -180,6 +224,214 @@ class FilmorateDbApplicationTests {
         assertEquals(newFilm.getName(), "Test Film Name");
     }
 
+    /**
+     * Тест проверяет, что фильм читается вместе с жанрами и режиссёрами:
+     * названия жанров берутся из справочника, повторы в связующих таблицах не дублируют жанры
+     */
+    @Test
+    void shouldHydrateGenresAndDirectors() {
+        Director director = new Director();
+        director.setName("Hydrated Director");
+        Director createdDirector = directorDbStorage.create(director);
+
+        Genre drama = new Genre();
+        drama.setId(2);
+        Genre comedy = new Genre();
+        comedy.setId(1);
+
+        Film film = new Film();
+        film.setName("Hydrated Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2010, 5, 5));
+        film.setDuration(100);
+        film.setMpa(new Mpa(3, null));
+        film.setGenres(new TreeSet<>(Set.of(drama, comedy)));
+        film.setDirectors(Set.of(createdDirector));
+        Film createdFilm = filmDbStorage.create(film);
+
+        Film hydrated = filmDbStorage.getFilmsByIds(List.of(createdFilm.getId())).get(0);
+
+        assertEquals(List.of("Комедия", "Драма"), hydrated.getGenres().stream().map(Genre::getName).toList());
+        assertEquals(Set.of(createdDirector), hydrated.getDirectors());
+        assertEquals("PG-13", hydrated.getMpa().getName());
+        assertEquals(hydrated, filmDbStorage.getFilm(createdFilm.getId()).orElseThrow());
+    }
+
+    /**
+     * Тест проверяет число обращений к БД при создании и обновлении фильма:
+     * ссылки проверяются одним запросом, связующие таблицы меняются на разницу, ответ не перечитывается
+     */
+    @Test
+    void shouldCreateAndUpdateFilmWithinStatementBudget() {
+        Director director = new Director();
+        director.setName("Budget Director");
+        Director createdDirector = directorDbStorage.create(director);
+        Director directorRef = new Director();
+        directorRef.setId(createdDirector.getId());
+
+        NewFilmRequest request = new NewFilmRequest();
+        request.setName("Budget Film");
+        request.setDescription("Description");
+        request.setReleaseDate(LocalDate.of(2015, 3, 3));
+        request.setDuration(90);
+        request.setMpa(new Mpa(3, null));
+        request.setGenres(Set.of(genre(1), genre(2)));
+        request.setDirectors(Set.of(directorRef));
+
+        StatementCounter.reset();
+        FilmDto created = filmService.create(request);
+        // режиссёры, INSERT фильма, пакет жанров, пакет режиссёров
+        assertEquals(4, StatementCounter.get());
+        assertEquals("PG-13", created.getMpa().getName());
+        assertEquals(List.of("Комедия", "Драма"), created.getGenres().stream().map(Genre::getName).toList());
+        assertEquals(Set.of(createdDirector), created.getDirectors());
+
+        UpdateFilmRequest update = new UpdateFilmRequest();
+        update.setId(created.getId());
+        update.setName("Budget Film 2");
+        update.setDescription("Description");
+        update.setReleaseDate(LocalDate.of(2015, 3, 3));
+        update.setDuration(95L);
+        update.setMpa(new Mpa(4, null));
+        update.setGenres(Set.of(genre(2), genre(3)));
+        update.setDirectors(Set.of(directorRef));
+
+        StatementCounter.reset();
+        FilmDto updated = filmService.update(update);
+        // режиссёры, текущие связи, UPDATE фильма, удаление жанра 1, добавление жанра 3
+        assertEquals(5, StatementCounter.get());
+        assertEquals(updated, filmService.getFilm(created.getId()));
+
+        update.setId(10_000L);
+        assertThrows(NotFoundException.class, () -> filmService.update(update));
+    }
+
+    /**
+     * Тест пакетного импорта: NDJSON и JSON-массив, результат по каждой записи,
+     * ошибочные записи не мешают сохранению остальных
+     */
+    @Test
+    void shouldImportFilmsInBulk() {
+        Director director = new Director();
+        director.setName("Bulk Director");
+        Long directorId = directorDbStorage.create(director).getId();
+
+        String ndjson = """
+                {"name":"Bulk 1","description":"d","releaseDate":"2001-01-01","duration":90,"mpa":{"id":1},"genres":[{"id":2}],"directors":[{"id":%d}]}
+                {"name":"","description":"d","releaseDate":"2001-01-01","duration":90,"mpa":{"id":1}}
+                {"name":"Bulk 3","description":"d","releaseDate":"2001-01-01","duration":90,"mpa":{"id":1},"genres":[{"id":99}]}
+                {"name":"Bulk 4","releaseDate":"2001-01-01","duration":90,"mpa":{"id":1}}
+                {"name":"Bulk 5","description":"d","releaseDate":"2002-02-02","duration":95,"mpa":{"id":2}}
+                """.formatted(directorId);
+        List<FilmImportResultDto> results = filmImportService.importFilms(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(List.of(0, 1, 2, 3, 4), results.stream().map(FilmImportResultDto::getIndex).toList());
+        assertEquals(List.of(FilmImportResultDto.CREATED, FilmImportResultDto.FAILED, FilmImportResultDto.FAILED,
+                        FilmImportResultDto.FAILED, FilmImportResultDto.CREATED),
+                results.stream().map(FilmImportResultDto::getStatus).toList());
+        assertEquals("Жанра с id 99 нет.", results.get(2).getError());
+
+        FilmDto first = filmService.getFilm(results.get(0).getId());
+        assertEquals("Bulk 1", first.getName());
+        assertEquals(List.of(2), first.getGenres().stream().map(Genre::getId).toList());
+        assertEquals(Set.of(directorId), first.getDirectors().stream().map(Director::getId).collect(Collectors.toSet()));
+        assertEquals("PG", filmService.getFilm(results.get(4).getId()).getMpa().getName());
+
+        String array = "[{\"name\":\"Bulk 6\",\"description\":\"d\",\"releaseDate\":\"2003-03-03\"," +
+                "\"duration\":80,\"mpa\":{\"id\":3}}, 42, {\"name\": ]";
+        results = filmImportService.importFilms(new ByteArrayInputStream(array.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(3, results.size());
+        assertEquals(FilmImportResultDto.CREATED, results.get(0).getStatus());
+        assertEquals("Запись должна быть объектом", results.get(1).getError());
+        assertTrue(results.get(2).getError().startsWith("Некорректный JSON"));
+    }
+
+    /**
+     * Тест постраничной выдачи по ключу и потоковой выдачи каталога: порядок и состав совпадают с полным списком
+     */
+    @Test
+    @Sql(scripts = {"/cleanup.sql", "/testdata.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(scripts = "/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    void shouldPageAndStreamFilmsByKeyset() {
+        List<Long> allIds = filmDbStorage.getAll().stream().map(Film::getId).toList();
+        assertTrue(allIds.size() >= 3, "В тестовых данных должно быть не меньше трёх фильмов");
+
+        List<Long> paged = new ArrayList<>();
+        Long afterId = null;
+        List<FilmDto> page;
+        do {
+            page = new ArrayList<>(filmService.getFilms(afterId, 2));
+            assertTrue(page.size() <= 2);
+            page.forEach(film -> paged.add(film.getId()));
+            afterId = page.isEmpty() ? afterId : page.get(page.size() - 1).getId();
+        } while (!page.isEmpty());
+        assertEquals(allIds, paged);
+
+        List<FilmDto> streamed = new ArrayList<>();
+        filmService.streamFilms(allIds.get(0), streamed::add);
+        assertEquals(allIds.subList(1, allIds.size()), streamed.stream().map(FilmDto::getId).toList());
+        assertEquals(filmService.getFilm(allIds.get(1)), streamed.get(0));
+    }
+
+    /**
+     * Тест выборки по массиву идентификаторов: пустой набор не ломает запрос,
+     * набор больше размера части делится на несколько запросов с одинаковым текстом
+     */
+    @Test
+    void shouldLookUpByIdArrayInChunks() {
+        assertTrue(directorDbStorage.getDirectorsByIds(Set.of()).isEmpty());
+
+        Director director = new Director();
+        director.setName("Chunked Director");
+        Long directorId = directorDbStorage.create(director).getId();
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1_000_000; ids.size() < IdArrayLookup.CHUNK_SIZE * 2 + 1; id++) {
+            ids.add(id);
+        }
+        ids.add(directorId);
+
+        StatementCounter.reset();
+        Map<Long, Director> found = directorDbStorage.getDirectorsByIds(ids);
+        assertEquals(3, StatementCounter.get());
+        assertEquals(Set.of(directorId), found.keySet());
+        assertEquals("Chunked Director", found.get(directorId).getName());
+    }
+
+    /**
+     * Тест повторных лайков: пара (фильм, пользователь) хранится один раз, счётчик не растёт,
+     * события добавления и удаления пишутся в ленту только для лайка, который действительно появился или исчез
+     */
+    @Test
+    void shouldKeepLikesIdempotent() {
+        Long userId = userDbStorage.saveUser(createTestUser()).getId();
+        Film film = new Film();
+        film.setName("Liked Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2010, 1, 1));
+        film.setDuration(100);
+        film.setMpa(new Mpa(1, null));
+        Long filmId = filmDbStorage.create(film).getId();
+
+        filmService.addLike(filmId, userId);
+        filmService.addLike(filmId, userId);
+        assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ?", Integer.class, filmId));
+        assertEquals(1, jdbc.queryForObject("SELECT likes_count FROM films WHERE film_id = ?", Integer.class, filmId));
+
+        filmService.deleteLike(filmId, userId);
+        filmService.deleteLike(filmId, userId);
+        assertEquals(0, jdbc.queryForObject("SELECT likes_count FROM films WHERE film_id = ?", Integer.class, filmId));
+        assertEquals(2, jdbc.queryForObject("SELECT COUNT(*) FROM feeds WHERE user_id = ? AND entity_id = ?",
+                Integer.class, userId, filmId));
+        assertThrows(NotFoundException.class, () -> filmService.addLike(filmId + 1000, userId));
+    }
+
+    private static Genre genre(int id) {
+        Genre genre = new Genre();
+        genre.setId(id);
+        return genre;
+    }
+
     /**
      * Тест проверяет корректность получения популярных фильмов с различными параметрами:
      * 1. Без фильтров (топ-10)
@@ -189,7 +441,7 @@ class FilmorateDbApplicationTests {
      * Использует SQL-скрипты для заполнения тестовых данных перед тестом и очистки после
      */
     @Test
-    @Sql(scripts = "/testdata.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(scripts = {"/cleanup.sql", "/testdata.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
     @Sql(scripts = "/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
     void shouldGetCorrectPopularFilms() {
         FilmDto film1 = filmService.getFilm(1L);
@@ -214,13 +466,65 @@ class FilmorateDbApplicationTests {
 
     }
 
+    /**
+     * Тест проверяет SQL-запросы популярных фильмов по году и по жанру и году при выключенном рейтинге в памяти,
+     * индексы для них и то, что миграция схемы заполняет release_year у уже существующих фильмов
+     */
+    @Test
+    @DirtiesContext
+    @Sql(scripts = {"/cleanup.sql", "/testdata.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(scripts = "/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    void shouldGetPopularFilmsByReleaseYearColumn() {
+        assertEquals(List.of(2L, 6L, 10L), filmIds(filmDbStorage.getPopularFilmsByYear(10, 2022)));
+        assertEquals(List.of(11L, 1L, 3L), filmIds(filmDbStorage.getPopularFilmsByGenreAndYear(10, 1, 2023)));
+        assertEquals(List.of(11L, 1L), filmIds(filmDbStorage.getPopularFilmsByGenreAndYear(2, 1, 2023)));
+        assertEquals(List.of(), filmIds(filmDbStorage.getPopularFilmsByYear(10, 1999)));
+
+        jdbc.execute("DROP INDEX idx_films_release_year");
+        jdbc.execute("DROP INDEX idx_film_genre_genre_film");
+        jdbc.execute("ALTER TABLE films DROP COLUMN release_year");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(jdbc.getDataSource());
+
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM films " +
+                "WHERE release_year IS NULL OR release_year <> EXTRACT(YEAR FROM release_date)", Integer.class));
+        assertEquals(2, jdbc.queryForObject("SELECT COUNT(*) FROM information_schema.indexes " +
+                "WHERE index_name IN ('IDX_FILMS_RELEASE_YEAR', 'IDX_FILM_GENRE_GENRE_FILM')", Integer.class));
+        assertEquals(List.of(2L, 6L, 10L), filmIds(filmDbStorage.getPopularFilmsByYear(10, 2022)));
+        assertEquals(List.of(11L, 1L, 3L), filmIds(filmDbStorage.getPopularFilmsByGenreAndYear(10, 1, 2023)));
+    }
+
+    private static List<Long> filmIds(Collection<Film> films) {
+        return films.stream().map(Film::getId).toList();
+    }
+
+    /**
+     * Тест проверяет справочники в памяти: поиск по id, готовый JSON списка
+     * и видимость новых строк только после явного обновления
+     */
+    @Test
+    @DirtiesContext
+    void shouldServeReferenceDataFromMemory() {
+        assertEquals("Комедия", referenceData.getGenre(1).orElseThrow().getName());
+        assertEquals("NC-17", referenceData.getMpa(5).orElseThrow().getName());
+        assertTrue(referenceData.getGenre(100).isEmpty());
+        assertTrue(new String(referenceData.getGenresJson(), StandardCharsets.UTF_8)
+                .startsWith("[{\"id\":1,\"name\":\"Комедия\"}"));
+
+        jdbc.update("INSERT INTO genre (id, name) VALUES (100, 'Вестерн')");
+        assertTrue(referenceData.getGenre(100).isEmpty());
+
+        referenceData.refresh();
+        assertEquals("Вестерн", referenceData.getGenre(100).orElseThrow().getName());
+        assertEquals(7, referenceData.getGenres().size());
+    }
+
     /**
      * Тест для проверки получения всех жанров
      * Выводит список всех фильмов в консоль
      * Использует SQL-скрипты для заполнения тестовых данных перед тестом и очистки после
      */
     @Test
-    @Sql(scripts = "/testdata.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(scripts = {"/cleanup.sql", "/testdata.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
     @Sql(scripts = "/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
     void shouldGetGenres() {
         System.out.println(filmService.getAll());
@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Экономия от условных GET под нагрузкой опроса: клиенты по кругу запрашивают /films/popular, /genres, /mpa
+ * и карточки фильмов, параллельно другой клиент ставит лайки, сдвигая эпоху популярности.
+ * Один и тот же опрос выполняется без If-None-Match и с ETag из предыдущих ответов; сравниваются
+ * переданные байты тела ответов и процессорное время потоков Tomcat.
+ * Запуск: mvn test -Dgroups=benchmark -Dsurefire.excludedGroups=none -Dtest=ConditionalGetBenchmark
+ */
+@Slf4j
+@Tag("benchmark")
+class ConditionalGetBenchmark {
+    private static final int POLLERS = 32;
+    private static final int ROUNDS = 100;
+    private static final int POLLED_FILMS = 20;
+    private static final long LIKE_INTERVAL_MS = 50;
+
+    @Test
+    void compareUnconditionalAndConditionalPolling() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:etag-benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.sql.init.data-locations=classpath:data.sql,classpath:benchmark/load-seed.sql",
+                "--spring.h2.console.enabled=false",
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework.jdbc=INFO",
+                "--logging.level.org.hibernate.SQL=INFO")) {
+            String base = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            List<String> urls = new ArrayList<>(List.of("/films/popular", "/genres", "/mpa"));
+            for (int filmId = 1; filmId <= POLLED_FILMS; filmId++) {
+                urls.add("/films/" + filmId);
+            }
+
+            poll(client, base, urls, false);
+            Result unconditional = poll(client, base, urls, false);
+            Result conditional = poll(client, base, urls, true);
+
+            log.warn(String.format("%-16s %10s %8s %14s %12s", "режим", "запросов", "304", "байт тела", "CPU Tomcat"));
+            log.warn(unconditional.format("без ETag"));
+            log.warn(conditional.format("If-None-Match"));
+            log.warn(String.format("Сэкономлено: %.1f%% байт, %.1f%% процессорного времени",
+                    100.0 * (unconditional.bodyBytes() - conditional.bodyBytes()) / unconditional.bodyBytes(),
+                    100.0 * (unconditional.cpuNanos() - conditional.cpuNanos()) / unconditional.cpuNanos()));
+
+            assertTrue(conditional.notModified() > 0);
+            assertTrue(conditional.bodyBytes() < unconditional.bodyBytes());
+        }
+    }
+
+    private Result poll(HttpClient client, String base, List<String> urls, boolean conditional) throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        long cpuBefore = serverCpuNanos();
+        List<Future<long[]>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> liker = executor.submit(() -> like(client, base, running));
+            for (int p = 0; p < POLLERS; p++) {
+                futures.add(executor.submit(() -> {
+                    Map<String, String> etags = new HashMap<>();
+                    long[] counts = new long[3];
+                    for (int round = 0; round < ROUNDS; round++) {
+                        for (String url : urls) {
+                            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(base + url)).GET();
+                            String etag = etags.get(url);
+                            if (conditional && etag != null) {
+                                request.header("If-None-Match", etag);
+                            }
+                            HttpResponse<byte[]> response = client.send(request.build(),
+                                    HttpResponse.BodyHandlers.ofByteArray());
+                            response.headers().firstValue("ETag").ifPresent(value -> etags.put(url, value));
+                            counts[0]++;
+                            counts[1] += response.statusCode() == 304 ? 1 : 0;
+                            counts[2] += response.body().length;
+                        }
+                    }
+                    return counts;
+                }));
+            }
+            long[] total = new long[3];
+            for (Future<long[]> future : futures) {
+                long[] counts = future.get();
+                for (int i = 0; i < total.length; i++) {
+                    total[i] += counts[i];
+                }
+            }
+            running.set(false);
+            liker.get();
+            return new Result(total[0], total[1], total[2], serverCpuNanos() - cpuBefore);
+        }
+    }
+
+    // Лайки случайных фильмов от случайных пользователей с постоянной частотой
+    private static Void like(HttpClient client, String base, AtomicBoolean running) throws Exception {
+        while (running.get()) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String url = base + "/films/" + random.nextInt(1, 2_001) + "/like/" + random.nextInt(1, 2_001);
+            client.send(HttpRequest.newBuilder(URI.create(url)).PUT(HttpRequest.BodyPublishers.noBody()).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            Thread.sleep(LIKE_INTERVAL_MS);
+        }
+        return null;
+    }
+
+    // Процессорное время рабочих потоков Tomcat, обслуживающих запросы
+    private static long serverCpuNanos() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith("http-nio-")) {
+                total += Math.max(0, threads.getThreadCpuTime(info.getThreadId()));
+            }
+        }
+        return total;
+    }
+
+    private record Result(long requests, long notModified, long bodyBytes, long cpuNanos) {
+        String format(String mode) {
+            return String.format("%-16s %10d %8d %14d %9.0f мс", mode, requests, notModified, bodyBytes,
+                    cpuNanos / 1_000_000.0);
+        }
+    }
+}
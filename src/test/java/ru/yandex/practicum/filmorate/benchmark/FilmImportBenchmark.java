@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.*;
+import ru.yandex.practicum.filmorate.dal.FeedDbStorage;
+import ru.yandex.practicum.filmorate.dal.mapper.*;
+import ru.yandex.practicum.filmorate.dal.mapper.FeedRowMapper;
+import ru.yandex.practicum.filmorate.dto.FilmImportResultDto;
+import ru.yandex.practicum.filmorate.dto.NewFilmRequest;
+import ru.yandex.practicum.filmorate.feed.FeedEventPublisher;
+import ru.yandex.practicum.filmorate.index.ExistenceIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.service.DirectorService;
+import ru.yandex.practicum.filmorate.service.FilmCache;
+import ru.yandex.practicum.filmorate.service.FilmImportService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.service.RequestCoalescer;
+import ru.yandex.practicum.filmorate.service.VersionRegistry;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Сравнение пропускной способности пакетного импорта с созданием фильмов по одному.
+ * Запуск: mvn test -Dgroups=benchmark -Dsurefire.excludedGroups=none
+ */
+@Slf4j
+@Tag("benchmark")
+@JdbcTest(properties = {"filmorate.leaderboard.enabled=false", "filmorate.likes-index.enabled=false",
+        "filmorate.search-index.enabled=false", "filmorate.suggest.enabled=false"})
+@AutoConfigureTestDatabase
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({UserDbStorage.class, FilmDbStorage.class, GenreDbStorage.class, DirectorDbStorage.class, MpaDbStorage.class,
+        UserRowMapper.class, FilmRowMapper.class, FilmHydrator.class, GenreRowMapper.class, MpaRowMapper.class,
+        DirectorRowMapper.class, FilmService.class, DirectorService.class, LikeWriteBuffer.class, FilmCache.class, VersionRegistry.class,
+        RequestCoalescer.class, FilmImportService.class,
+        PopularityLeaderboard.class, LikeIndex.class, ExistenceIndex.class, FriendGraph.class,
+        FilmSearchIndex.class, FilmSuggestIndex.class,
+        ReferenceDataRegistry.class, FeedEventPublisher.class, FeedDbStorage.class, FeedRowMapper.class})
+class FilmImportBenchmark {
+    private static final int FILMS = 5_000;
+    private static final int WARMUP = 500;
+
+    private final FilmService filmService;
+    private final FilmImportService filmImportService;
+
+    @Test
+    void compareBulkImportWithSingleCreate() {
+        createOneByOne(WARMUP);
+        importBulk(WARMUP);
+
+        long started = System.nanoTime();
+        createOneByOne(FILMS);
+        double single = throughput(started);
+
+        started = System.nanoTime();
+        List<FilmImportResultDto> results = importBulk(FILMS);
+        double bulk = throughput(started);
+
+        assertEquals(FILMS, results.stream().filter(r -> FilmImportResultDto.CREATED.equals(r.getStatus())).count());
+        log.info("Создание по одному: {} фильмов/с, пакетный импорт: {} фильмов/с, ускорение x{}.",
+                Math.round(single), Math.round(bulk), String.format("%.1f", bulk / single));
+    }
+
+    private void createOneByOne(int count) {
+        for (int i = 0; i < count; i++) {
+            NewFilmRequest request = new NewFilmRequest();
+            request.setName("Single " + i);
+            request.setDescription("Benchmark");
+            request.setReleaseDate(LocalDate.of(2000, 1, 1).plusDays(i % 3650));
+            request.setDuration(90 + i % 60);
+            request.setMpa(new Mpa(1 + i % 5, null));
+            Genre genre = new Genre();
+            genre.setId(1 + i % 6);
+            request.setGenres(Set.of(genre));
+            filmService.create(request);
+        }
+    }
+
+    private List<FilmImportResultDto> importBulk(int count) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            body.append("{\"name\":\"Bulk ").append(i)
+                    .append("\",\"description\":\"Benchmark\",\"releaseDate\":\"")
+                    .append(LocalDate.of(2000, 1, 1).plusDays(i % 3650))
+                    .append("\",\"duration\":").append(90 + i % 60)
+                    .append(",\"mpa\":{\"id\":").append(1 + i % 5)
+                    .append("},\"genres\":[{\"id\":").append(1 + i % 6).append("}]}\n");
+        }
+        return filmImportService.importFilms(new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static double throughput(long started) {
+        return FILMS / ((System.nanoTime() - started) / 1e9);
+    }
+}
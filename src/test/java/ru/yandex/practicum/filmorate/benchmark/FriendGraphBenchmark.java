@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.FeedDbStorage;
+import ru.yandex.practicum.filmorate.dal.UserDbStorage;
+import ru.yandex.practicum.filmorate.dal.mapper.FeedRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.UserRowMapper;
+import ru.yandex.practicum.filmorate.feed.FeedEventPublisher;
+import ru.yandex.practicum.filmorate.index.ExistenceIndex;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Общие друзья и списки друзей на наборе из load-seed.sql (2000 пользователей по 20 друзей):
+ * SQL-запросы против графа в памяти — из одной основы, с дельтой из свежих дружб и после сжатия.
+ * Перед замером каждого режима результаты сверяются с SQL. В журнал выводится отчёт о памяти графа.
+ * Запуск: mvn test -Dgroups=benchmark -Dsurefire.excludedGroups=none -Dtest=FriendGraphBenchmark
+ */
+@Slf4j
+@Tag("benchmark")
+@JdbcTest(properties = {"filmorate.leaderboard.enabled=false", "filmorate.likes-index.enabled=false",
+        "filmorate.suggest.enabled=false", "filmorate.existence-index.enabled=false",
+        "filmorate.friends-graph.enabled=false", "filmorate.friends-graph.compaction-threshold=1000000",
+        "spring.datasource.url=jdbc:h2:mem:friends-benchmark;DB_CLOSE_DELAY=-1",
+        "logging.level.ru.yandex.practicum.filmorate=WARN", "logging.level.org.springframework.jdbc=INFO"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({UserDbStorage.class, UserRowMapper.class, PopularityLeaderboard.class, LikeIndex.class, FilmSuggestIndex.class,
+        ExistenceIndex.class, FriendGraph.class, FeedEventPublisher.class, FeedDbStorage.class, FeedRowMapper.class})
+@Sql(scripts = {"/cleanup.sql", "/benchmark/load-seed.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class FriendGraphBenchmark {
+    private static final int USERS = 2_000;
+    private static final int CALLS = 20_000;
+    private static final int NEW_FRIENDSHIPS = 2_000;
+
+    private final UserDbStorage userStorage;
+    private final FriendGraph graph;
+
+    @Test
+    void compareSqlAndGraph() {
+        List<List<User>> expected = sample();
+        double sql = measure();
+
+        graph.load();
+        assertEquals(expected, sample());
+        double base = measure();
+        log.warn("Граф после загрузки: {}.", graph.report());
+
+        Random random = new Random(7);
+        for (int i = 0; i < NEW_FRIENDSHIPS; i++) {
+            long userId = random.nextInt(USERS) + 1;
+            long friendId = random.nextInt(USERS) + 1;
+            userStorage.addFriend(userId, friendId);
+        }
+        List<List<User>> withDelta = sample();
+        double delta = measure();
+        log.warn("Граф с дельтой: {}.", graph.report());
+
+        graph.compact();
+        assertEquals(withDelta, sample());
+        double compacted = measure();
+        log.warn("Граф после сжатия: {}.", graph.report());
+
+        log.warn(String.format("%-22s %12s", "режим", "вызовов/с"));
+        log.warn(String.format("%-22s %12.0f", "SQL", sql));
+        log.warn(String.format("%-22s %12.0f", "граф, основа", base));
+        log.warn(String.format("%-22s %12.0f", "граф, дельта", delta));
+        log.warn(String.format("%-22s %12.0f", "граф после сжатия", compacted));
+    }
+
+    // Прогрев, затем замер: чередование общих друзей и страниц друзей для случайных пользователей
+    private double measure() {
+        run(new Random(3), CALLS);
+        long started = System.nanoTime();
+        run(new Random(42), CALLS);
+        return CALLS / ((System.nanoTime() - started) / 1e9);
+    }
+
+    private void run(Random random, int calls) {
+        for (int i = 0; i < calls; i++) {
+            long userId = random.nextInt(USERS) + 1;
+            long otherId = random.nextInt(USERS) + 1;
+            if (i % 2 == 0) {
+                userStorage.getSameFriends(userId, otherId, null, null);
+            } else {
+                userStorage.getUserFriends(userId, null, 10);
+            }
+        }
+    }
+
+    private List<List<User>> sample() {
+        Random random = new Random(1);
+        return IntStream.range(0, 200)
+                .mapToObj(i -> i % 2 == 0
+                        ? userStorage.getSameFriends((long) random.nextInt(USERS) + 1,
+                        (long) random.nextInt(USERS) + 1, null, null)
+                        : userStorage.getUserFriends((long) random.nextInt(USERS) + 1, 5L, 10))
+                .toList();
+    }
+}
@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dal.IdArrayLookup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Накладные расходы на разбор и планирование: IN-список переменной длины против одного параметра-массива.
+ * Размеры наборов случайны, поэтому IN-вариант почти каждый раз получает новый текст запроса.
+ * Запуск: mvn test -Dgroups=benchmark -Dsurefire.excludedGroups=none
+ */
+@Slf4j
+@Tag("benchmark")
+@JdbcTest(properties = {"filmorate.leaderboard.enabled=false", "filmorate.likes-index.enabled=false",
+        "filmorate.search-index.enabled=false", "filmorate.suggest.enabled=false"})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class IdLookupBenchmark {
+    private static final int ITERATIONS = 20_000;
+    private static final int MAX_IDS = 200;
+    private static final String SELECT = "SELECT fg.film_id, fg.genre_id FROM film_genre fg WHERE fg.film_id ";
+
+    private final JdbcTemplate jdbc;
+
+    @Test
+    void compareInListWithArrayParameter() {
+        run(this::inList, ITERATIONS / 10);
+        run(this::anyArray, ITERATIONS / 10);
+
+        long inListNanos = run(this::inList, ITERATIONS);
+        long arrayNanos = run(this::anyArray, ITERATIONS);
+
+        log.info("IN (?,...): {} мкс/запрос, = ANY(?): {} мкс/запрос, ускорение x{}.",
+                inListNanos / ITERATIONS / 1000, arrayNanos / ITERATIONS / 1000,
+                String.format("%.1f", (double) inListNanos / arrayNanos));
+        assertEquals(rows(this::inList), rows(this::anyArray));
+    }
+
+    private long inList(List<Long> ids) {
+        AtomicLong rows = new AtomicLong();
+        String sql = SELECT + "IN (" + String.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+        jdbc.query(sql, rs -> {
+            rows.incrementAndGet();
+        }, ids.toArray());
+        return rows.get();
+    }
+
+    private long anyArray(List<Long> ids) {
+        AtomicLong rows = new AtomicLong();
+        IdArrayLookup.query(jdbc, SELECT + "= ANY(?)", ids, rs -> {
+            rows.incrementAndGet();
+        });
+        return rows.get();
+    }
+
+    // Время серии запросов с одинаковой последовательностью размеров для обоих вариантов
+    private static long run(Lookup lookup, int iterations) {
+        Random random = new Random(42);
+        long started = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            lookup.query(ids(random));
+        }
+        return System.nanoTime() - started;
+    }
+
+    private static long rows(Lookup lookup) {
+        Random random = new Random(7);
+        long rows = 0;
+        for (int i = 0; i < 100; i++) {
+            rows += lookup.query(ids(random));
+        }
+        return rows;
+    }
+
+    private static List<Long> ids(Random random) {
+        int size = 1 + random.nextInt(MAX_IDS);
+        List<Long> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(1L + random.nextInt(1_000));
+        }
+        return ids;
+    }
+
+    private interface Lookup {
+        long query(List<Long> ids);
+    }
+}
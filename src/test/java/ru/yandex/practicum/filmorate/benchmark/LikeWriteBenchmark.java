@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.*;
+import ru.yandex.practicum.filmorate.dal.FeedDbStorage;
+import ru.yandex.practicum.filmorate.dal.mapper.*;
+import ru.yandex.practicum.filmorate.dal.mapper.FeedRowMapper;
+import ru.yandex.practicum.filmorate.feed.FeedEventPublisher;
+import ru.yandex.practicum.filmorate.index.ExistenceIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.service.DirectorService;
+import ru.yandex.practicum.filmorate.service.FilmCache;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.service.RequestCoalescer;
+import ru.yandex.practicum.filmorate.service.VersionRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Пропускная способность лайков при конкурентной нагрузке: потоки ставят и снимают лайки
+ * на небольшом наборе фильмов и пользователей, после чего проверяется согласованность likes_count.
+ * База — H2 в памяти с пулом соединений, как в приложении; журнал по каждому лайку отключён, чтобы не мерить вывод.
+ * Запуск: mvn test -Dgroups=benchmark -Dsurefire.excludedGroups=none
+ */
+@Slf4j
+@Tag("benchmark")
+@JdbcTest(properties = {"filmorate.leaderboard.enabled=false", "filmorate.likes-index.enabled=false",
+        "filmorate.search-index.enabled=false", "filmorate.suggest.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:like-benchmark;DB_CLOSE_DELAY=-1",
+        "logging.level.ru.yandex.practicum.filmorate=WARN", "logging.level.org.springframework.jdbc=INFO"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({UserDbStorage.class, FilmDbStorage.class, GenreDbStorage.class, DirectorDbStorage.class, MpaDbStorage.class,
+        UserRowMapper.class, FilmRowMapper.class, FilmHydrator.class, GenreRowMapper.class, MpaRowMapper.class,
+        DirectorRowMapper.class, FilmService.class, DirectorService.class, LikeWriteBuffer.class, FilmCache.class, VersionRegistry.class,
+        RequestCoalescer.class,
+        PopularityLeaderboard.class, LikeIndex.class, ExistenceIndex.class, FriendGraph.class,
+        FilmSearchIndex.class, FilmSuggestIndex.class,
+        ReferenceDataRegistry.class, FeedEventPublisher.class, FeedDbStorage.class, FeedRowMapper.class})
+class LikeWriteBenchmark {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 2_000;
+    private static final int FILMS = 20;
+    private static final int USERS = 20;
+
+    private final FilmService filmService;
+    private final JdbcTemplate jdbc;
+
+    @Test
+    void measureConcurrentLikes() throws Exception {
+        List<Long> films = new ArrayList<>();
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            films.add(insert("INSERT INTO films(title, description, release_date, duration, mpa_id) " +
+                    "VALUES ('Bench " + i + "', 'd', '2000-01-01', 90, 1)", "film_id"));
+        }
+        for (int i = 0; i < USERS; i++) {
+            users.add(insert("INSERT INTO users(email, name, birthday, login) " +
+                    "VALUES ('u" + i + "@ya.ru', 'u', '1990-01-01', 'u" + i + "')", "user_id"));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long started = System.nanoTime();
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(executor.submit(() -> {
+                int failed = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    Long filmId = films.get(random.nextInt(FILMS));
+                    Long userId = users.get(random.nextInt(USERS));
+                    try {
+                        if (random.nextInt(3) == 0) {
+                            filmService.deleteLike(filmId, userId);
+                        } else {
+                            filmService.addLike(filmId, userId);
+                        }
+                    } catch (RuntimeException e) {
+                        failed++;
+                    }
+                }
+                return failed;
+            }));
+        }
+        int failed = 0;
+        for (Future<Integer> result : results) {
+            failed += result.get();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        executor.shutdown();
+
+        Integer duplicates = jdbc.queryForObject("SELECT COUNT(*) - COUNT(DISTINCT (film_id, user_id)) FROM likes",
+                Integer.class);
+        Integer drift = jdbc.queryForObject("SELECT COUNT(*) FROM films f WHERE f.likes_count <> " +
+                "(SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)", Integer.class);
+        log.warn("Лайки: {} операций/с в {} потоках, ошибок {}, дублей {}, фильмов с неверным likes_count {}.",
+                Math.round(THREADS * OPERATIONS_PER_THREAD / seconds), THREADS, failed, duplicates, drift);
+    }
+
+    private Long insert(String sql, String key) {
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.update(connection -> connection.prepareStatement(sql, new String[]{key}), keyHolder);
+        return keyHolder.getKeyAs(Long.class);
+    }
+}
@@ -0,0 +1,231 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Нагрузочное сравнение режимов выполнения запросов: пул платформенных потоков Tomcat
+ * и виртуальные потоки (spring.threads.virtual.enabled) с ограничителем соединений.
+ * Приложение поднимается целиком на случайном порту дважды, клиенты шлют запросы к /films/popular,
+ * /films/{id} и /users/{id}/friends, для каждого адреса считаются пропускная способность и p99.
+ * В режиме виртуальных потоков через JFR собираются события jdk.VirtualThreadPinned: закрепление
+ * виртуального потока в synchronized-участках драйвера, пула или нашего кода.
+ * Запуск: mvn test -Dgroups=benchmark -Dsurefire.excludedGroups=none -Dtest=VirtualThreadBenchmark
+ */
+@Slf4j
+@Tag("benchmark")
+class VirtualThreadBenchmark {
+    private static final int CLIENTS = 400;
+    private static final Duration WARMUP = Duration.ofSeconds(5);
+    private static final Duration MEASURE = Duration.ofSeconds(15);
+    private static final int USERS = 2_000;
+    private static final int FILMS = 2_000;
+
+    private static final Map<String, IntFunction<String>> ENDPOINTS = new LinkedHashMap<>();
+
+    static {
+        ENDPOINTS.put("/films/popular", n -> "/films/popular?count=10");
+        ENDPOINTS.put("/films/{id}", n -> "/films/" + (n % FILMS + 1));
+        ENDPOINTS.put("/users/{id}/friends", n -> "/users/" + (n % USERS + 1) + "/friends");
+    }
+
+    @Test
+    void comparePlatformAndVirtualThreads() throws Exception {
+        Map<String, Stats> platform = run(false);
+        Map<String, Stats> virtual = run(true);
+
+        log.warn(String.format("%-22s %14s %14s %12s %12s", "адрес", "платф. req/s", "вирт. req/s",
+                "платф. p99", "вирт. p99"));
+        for (String endpoint : ENDPOINTS.keySet()) {
+            Stats p = platform.get(endpoint);
+            Stats v = virtual.get(endpoint);
+            log.warn(String.format("%-22s %14.0f %14.0f %9.1f мс %9.1f мс", endpoint, p.throughput(),
+                    v.throughput(), p.p99Millis(), v.p99Millis()));
+            assertEquals(0, p.errors(), "ошибки в режиме платформенных потоков: " + endpoint);
+            assertEquals(0, v.errors(), "ошибки в режиме виртуальных потоков: " + endpoint);
+        }
+    }
+
+    private Map<String, Stats> run(boolean virtualThreads) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        Map<String, AtomicLong> pinned = new ConcurrentHashMap<>();
+        try (ConfigurableApplicationContext context = start(mode, virtualThreads);
+             RecordingStream pinning = new RecordingStream()) {
+            pinning.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            pinning.onEvent("jdk.VirtualThreadPinned",
+                    event -> pinned.computeIfAbsent(pinnedAt(event), k -> new AtomicLong()).incrementAndGet());
+            pinning.startAsync();
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            load(port, WARMUP);
+            Map<String, Stats> stats = load(port, MEASURE);
+
+            if (virtualThreads) {
+                pinning.stop();
+                report(pinned);
+                Timer wait = context.getBean(MeterRegistry.class).get("filmorate.jdbc.limiter.wait").timer();
+                log.warn("Ожидание соединения в ограничителе: {} раз, среднее {} мс, максимум {} мс", wait.count(),
+                        String.format("%.2f", wait.mean(TimeUnit.MILLISECONDS)),
+                        String.format("%.2f", wait.max(TimeUnit.MILLISECONDS)));
+            }
+            return stats;
+        }
+    }
+
+    // Свойства передаются аргументами командной строки: они старше application.properties
+    private ConfigurableApplicationContext start(String mode, boolean virtualThreads) {
+        return new SpringApplicationBuilder(FilmorateApplication.class).run(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--spring.datasource.url=jdbc:h2:mem:vt-benchmark-" + mode + ";DB_CLOSE_DELAY=-1",
+                "--spring.sql.init.data-locations=classpath:data.sql,classpath:benchmark/load-seed.sql",
+                "--spring.h2.console.enabled=false",
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework.jdbc=INFO",
+                "--logging.level.org.hibernate.SQL=INFO");
+    }
+
+    // Клиенты в виртуальных потоках шлют запросы без пауз, каждый по кругу ко всем адресам
+    private Map<String, Stats> load(int port, Duration duration) throws Exception {
+        List<String> endpoints = new ArrayList<>(ENDPOINTS.keySet());
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<Map<String, Samples>>> futures = new ArrayList<>();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CLIENTS; c++) {
+                futures.add(clients.submit(() -> {
+                    Map<String, Samples> samples = new LinkedHashMap<>();
+                    endpoints.forEach(endpoint -> samples.put(endpoint, new Samples()));
+                    int n = ThreadLocalRandom.current().nextInt(1_000_000);
+                    while (System.nanoTime() < deadline) {
+                        n++;
+                        String endpoint = endpoints.get(n % endpoints.size());
+                        HttpRequest request = HttpRequest.newBuilder(
+                                URI.create("http://localhost:" + port + ENDPOINTS.get(endpoint).apply(n)))
+                                .timeout(Duration.ofSeconds(30))
+                                .GET()
+                                .build();
+                        long start = System.nanoTime();
+                        int status;
+                        try {
+                            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (Exception e) {
+                            status = -1;
+                        }
+                        samples.get(endpoint).add(System.nanoTime() - start, status == 200);
+                    }
+                    return samples;
+                }));
+            }
+        }
+        Map<String, Stats> stats = new LinkedHashMap<>();
+        for (String endpoint : endpoints) {
+            Samples merged = new Samples();
+            for (Future<Map<String, Samples>> future : futures) {
+                merged.addAll(future.get().get(endpoint));
+            }
+            stats.put(endpoint, merged.toStats(duration));
+        }
+        assertTrue(stats.values().stream().allMatch(s -> s.requests() > 0), "нет ответов: " + stats);
+        return stats;
+    }
+
+    // Первый кадр стека из нашего кода, пула или драйвера, а если таких нет — верхний кадр
+    private static String pinnedAt(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "без стека";
+        }
+        List<RecordedFrame> frames = event.getStackTrace().getFrames();
+        return frames.stream()
+                .filter(frame -> frame.getMethod() != null)
+                .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName())
+                .filter(name -> name.startsWith("ru.yandex.") || name.startsWith("org.h2.")
+                        || name.startsWith("com.zaxxer."))
+                .findFirst()
+                .orElseGet(() -> frames.isEmpty() || frames.get(0).getMethod() == null ? "без стека"
+                        : frames.get(0).getMethod().getType().getName() + "." + frames.get(0).getMethod().getName());
+    }
+
+    private static void report(Map<String, AtomicLong> pinned) {
+        if (pinned.isEmpty()) {
+            log.warn("Закреплений виртуальных потоков не обнаружено.");
+            return;
+        }
+        log.warn("Закрепления виртуальных потоков по месту: {}", pinned.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().get(), a.getValue().get()))
+                .limit(10)
+                .map(e -> e.getKey() + "=" + e.getValue().get())
+                .collect(Collectors.joining(", ")));
+        assertTrue(pinned.keySet().stream().noneMatch(place -> place.startsWith("ru.yandex.")),
+                "виртуальный поток закреплён в коде приложения: " + pinned.keySet());
+    }
+
+    private static final class Samples {
+        private long[] latencies = new long[1024];
+        private int size;
+        private long errors;
+
+        void add(long latencyNanos, boolean ok) {
+            if (!ok) {
+                errors++;
+            }
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latencyNanos;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.latencies[i], true);
+            }
+            errors += other.errors;
+        }
+
+        Stats toStats(Duration duration) {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            long p99 = size == 0 ? 0 : sorted[Math.min(size - 1, (int) Math.ceil(size * 0.99) - 1)];
+            return new Stats(size, errors, size / (duration.toMillis() / 1000.0), p99 / 1_000_000.0);
+        }
+    }
+
+    private record Stats(long requests, long errors, double throughput, double p99Millis) {
+    }
+}
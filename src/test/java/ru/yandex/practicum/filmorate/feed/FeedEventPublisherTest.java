@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.feed;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.FeedDbStorage;
+import ru.yandex.practicum.filmorate.dal.mapper.FeedRowMapper;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@JdbcTest(properties = {"filmorate.feed.mode=async", "filmorate.feed.capacity=4", "filmorate.feed.batch-size=8",
+        "filmorate.feed.flush-interval-ms=3600000"})
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FeedEventPublisher.class, FeedDbStorage.class, FeedRowMapper.class, SimpleMeterRegistry.class})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@Sql(scripts = {"/cleanup.sql", "/testdata.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class FeedEventPublisherTest {
+    private final FeedEventPublisher feedPublisher;
+    private final FeedDbStorage feedStorage;
+    private final MeterRegistry meterRegistry;
+    private final JdbcTemplate jdbc;
+
+    /**
+     * Тест проверяет, что в асинхронном режиме события копятся в буфере, при переполнении записываются
+     * в потоке вызова, а после flush() все лежат в feeds в порядке публикации
+     */
+    @Test
+    void shouldWriteEventsInOrderAndRecordMetrics() {
+        List<FeedEvent> events = LongStream.rangeClosed(1, 10)
+                .mapToObj(entityId -> FeedEvent.of(1, entityId, FeedEvent.Type.FRIEND, FeedEvent.Operation.ADD))
+                .toList();
+        events.forEach(feedPublisher::publish);
+
+        assertTrue(meterRegistry.get("filmorate.feed.events.overflow").counter().count() > 0);
+        assertTrue(meterRegistry.get("filmorate.feed.queue.depth").gauge().value() > 0);
+
+        feedPublisher.flush();
+
+        assertEquals(LongStream.rangeClosed(1, 10).boxed().toList(),
+                jdbc.queryForList("SELECT entity_id FROM feeds WHERE user_id = 1 ORDER BY event_id", Long.class));
+        assertEquals(0, meterRegistry.get("filmorate.feed.queue.depth").gauge().value());
+        assertEquals(10, meterRegistry.get("filmorate.feed.events.written").counter().count());
+        assertTrue(meterRegistry.get("filmorate.feed.flush").timer().count() > 0);
+    }
+
+    /**
+     * Тест проверяет, что перенос из outbox переносит и удаляет ровно выбранные строки в порядке id,
+     * а события удалённого пользователя отбрасываются
+     */
+    @Test
+    void shouldRelayExactlySelectedOutboxRows() {
+        List<FeedEvent> events = LongStream.rangeClosed(1, 5)
+                .mapToObj(entityId -> FeedEvent.of(entityId == 2 ? 1000 : 1, entityId, FeedEvent.Type.LIKE,
+                        FeedEvent.Operation.ADD))
+                .toList();
+        feedStorage.addToOutbox(events);
+
+        assertEquals(3, feedStorage.relayOutbox(3));
+        assertEquals(2, feedStorage.countOutbox());
+        assertEquals(2, feedStorage.relayOutbox(10));
+        assertEquals(0, feedStorage.relayOutbox(10));
+
+        assertEquals(List.of(1L, 3L, 4L, 5L),
+                jdbc.queryForList("SELECT entity_id FROM feeds WHERE user_id = 1 ORDER BY event_id", Long.class));
+    }
+}
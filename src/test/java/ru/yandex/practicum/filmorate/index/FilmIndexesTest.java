@@ -0,0 +1,243 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.dal.FeedDbStorage;
+import ru.yandex.practicum.filmorate.dal.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dal.FilmHydrator;
+import ru.yandex.practicum.filmorate.dal.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dal.MpaDbStorage;
+import ru.yandex.practicum.filmorate.dal.UserDbStorage;
+import ru.yandex.practicum.filmorate.dal.mapper.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.FeedRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.MpaRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.UserRowMapper;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.FilmSuggestionDto;
+import ru.yandex.practicum.filmorate.feed.FeedEventPublisher;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.DirectorService;
+import ru.yandex.practicum.filmorate.service.FilmCache;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.service.RequestCoalescer;
+import ru.yandex.practicum.filmorate.service.VersionRegistry;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@JdbcTest(properties = {"filmorate.leaderboard.enabled=false", "filmorate.likes-index.enabled=false",
+        "filmorate.search-index.enabled=false", "filmorate.suggest.enabled=false"})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({UserDbStorage.class, FilmDbStorage.class, GenreDbStorage.class, DirectorDbStorage.class, MpaDbStorage.class,
+        UserRowMapper.class, FilmRowMapper.class, FilmHydrator.class, GenreRowMapper.class, MpaRowMapper.class, DirectorRowMapper.class,
+        FilmService.class, DirectorService.class, LikeWriteBuffer.class, FilmCache.class, VersionRegistry.class,
+        RequestCoalescer.class, PopularityLeaderboard.class, LikeIndex.class,
+        ExistenceIndex.class, FriendGraph.class,
+        FilmSearchIndex.class, FilmSuggestIndex.class,
+        ReferenceDataRegistry.class, FeedEventPublisher.class, FeedDbStorage.class, FeedRowMapper.class})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@Sql(scripts = {"/cleanup.sql", "/testdata.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class FilmIndexesTest {
+    private final FilmService filmService;
+    private final PopularityLeaderboard leaderboard;
+    private final LikeIndex likeIndex;
+    private final FilmSearchIndex searchIndex;
+    private final FilmSuggestIndex suggestIndex;
+    private final ExistenceIndex existenceIndex;
+    private final UserDbStorage userStorage;
+    private final FilmDbStorage filmStorage;
+    private final JdbcTemplate jdbc;
+
+    /**
+     * Тест проверяет, что рейтинг в памяти отдаёт популярные фильмы в том же порядке, что и SQL-запросы,
+     * учитывает изменения лайков после загрузки и замечает расхождение со счётчиками в БД
+     */
+    @Test
+    void shouldGetPopularFilmsInSameOrderAsDatabase() {
+        assertFalse(leaderboard.isReady());
+        Collection<FilmDto> all = filmService.getPopularFilms(10, null, null);
+        Collection<FilmDto> byGenre = filmService.getPopularFilms(10, 1, null);
+        Collection<FilmDto> byYear = filmService.getPopularFilms(10, null, 2022);
+        Collection<FilmDto> byGenreAndYear = filmService.getPopularFilms(10, 1, 2023);
+
+        leaderboard.load();
+
+        assertTrue(leaderboard.isReady());
+        assertEquals(0, leaderboard.countDrift(filmStorage.getLikesCounts()));
+        assertArrayEquals(all.toArray(), filmService.getPopularFilms(10, null, null).toArray());
+        assertArrayEquals(byGenre.toArray(), filmService.getPopularFilms(10, 1, null).toArray());
+        assertArrayEquals(byYear.toArray(), filmService.getPopularFilms(10, null, 2022).toArray());
+        assertArrayEquals(byGenreAndYear.toArray(), filmService.getPopularFilms(10, 1, 2023).toArray());
+
+        leaderboard.onLikesChanged(10L, 6);
+        assertEquals(List.of(10L), leaderboard.getTop(1, null, 2022));
+        assertEquals(List.of(10L, 11L), leaderboard.getTop(2, null, null));
+
+        leaderboard.onFilmDeleted(11L);
+        assertEquals(List.of(10L, 1L, 2L), leaderboard.getTop(3, null, null));
+        assertEquals(2, leaderboard.countDrift(filmStorage.getLikesCounts()));
+    }
+
+    /**
+     * Тест проверяет, что фильм без рейтинга MPA не попадает ни в рейтинг, ни в счётчики для сверки,
+     * поэтому расхождения нет
+     */
+    @Test
+    void shouldNotCountFilmWithoutMpaAsDrift() {
+        jdbc.update("UPDATE films SET mpa_id = NULL WHERE film_id = 11");
+        Collection<FilmDto> all = filmService.getPopularFilms(10, null, null);
+
+        leaderboard.load();
+
+        assertFalse(filmStorage.getLikesCounts().containsKey(11L));
+        assertEquals(0, leaderboard.countDrift(filmStorage.getLikesCounts()));
+        assertArrayEquals(all.toArray(), filmService.getPopularFilms(10, null, null).toArray());
+    }
+
+    /**
+     * Тест проверяет, что пересечение битовых множеств лайков даёт те же общие фильмы и в том же порядке,
+     * что и SQL-запрос
+     */
+    @Test
+    void shouldGetCommonFilmsFromIndexes() {
+        List<Long> fromDatabase = filmService.getCommonFilms(4L, 5L).stream().map(Film::getId).toList();
+
+        leaderboard.load();
+        likeIndex.load();
+
+        assertEquals(List.of(11L, 1L, 2L), fromDatabase);
+        assertEquals(fromDatabase, filmService.getCommonFilms(4L, 5L).stream().map(Film::getId).toList());
+        assertTrue(filmService.getCommonFilms(6L, 100L).isEmpty());
+    }
+
+    /**
+     * Тест проверяет, что триграммный индекс находит те же фильмы, что и LIKE-запросы,
+     * в том числе по имени режиссёра и по запросу короче триграммы
+     */
+    @Test
+    void shouldSearchFilmsWithTrigramIndex() {
+        jdbc.update("INSERT INTO directors (name) VALUES ('Christopher Nolan')");
+        Long directorId = jdbc.queryForObject("SELECT MAX(id) FROM directors", Long.class);
+        jdbc.update("INSERT INTO film_director (film_id, director_id) VALUES (3, ?), (7, ?)", directorId, directorId);
+
+        List<List<String>> modes = List.of(List.of("title"), List.of("director"), List.of("title", "director"));
+        List<String> queries = List.of("film 1", "LM 1", "1", "nol", "FILM", "missing");
+        List<Set<Long>> fromDatabase = queries.stream()
+                .flatMap(query -> modes.stream().map(by -> ids(query, by)))
+                .toList();
+
+        leaderboard.load();
+        searchIndex.load();
+
+        assertEquals(fromDatabase, queries.stream()
+                .flatMap(query -> modes.stream().map(by -> ids(query, by)))
+                .toList());
+        assertEquals(List.of(11L, 1L, 10L), filmService.searchFilms("film 1", List.of("title")).stream()
+                .map(Film::getId)
+                .toList());
+    }
+
+    /**
+     * Тест проверяет подсказки из префиксного дерева: совпадение с запросом к БД, поиск по началу любого слова,
+     * порядок по популярности и обновление после изменений лайков и фильмов
+     */
+    @Test
+    void shouldSuggestByPrefixInPopularityOrder() {
+        assertFalse(suggestIndex.isReady());
+        List<FilmSuggestionDto> fromDatabase = filmService.suggest("Film 1", 10);
+
+        jdbc.update("INSERT INTO directors (name) VALUES ('Christopher Nolan')");
+        Long directorId = jdbc.queryForObject("SELECT MAX(id) FROM directors", Long.class);
+        jdbc.update("INSERT INTO film_director (film_id, director_id) VALUES (2, ?)", directorId);
+        suggestIndex.load();
+
+        assertEquals(fromDatabase, filmService.suggest("Film 1", 10));
+        assertEquals(List.of(11L, 1L, 10L), suggestedIds("film 1", 10));
+        assertEquals(List.of(11L, 1L), suggestedIds("FILM  1", 2));
+        assertEquals(List.of(10L), suggestedIds("10", 10));
+        assertEquals(List.of("director"), filmService.suggest("nol", 10).stream().map(FilmSuggestionDto::getType).toList());
+        assertTrue(filmService.suggest("olan", 10).isEmpty());
+
+        suggestIndex.onLikesChanged(10L, 4);
+        suggestIndex.onLikesChanged(10L, 6);
+        assertEquals(List.of(11L, 1L, 10L), suggestedIds("film 1", 10));
+        suggestIndex.refreshScores();
+        assertEquals(List.of(10L, 11L, 1L), suggestedIds("film 1", 10));
+
+        Film renamed = new Film();
+        renamed.setId(10L);
+        renamed.setName("Interstellar");
+        Director nolan = new Director();
+        nolan.setId(directorId);
+        nolan.setName("Christopher Nolan");
+        renamed.setDirectors(Set.of(nolan));
+        suggestIndex.onFilmSaved(renamed);
+        suggestIndex.onFilmDeleted(11L);
+
+        assertEquals(List.of(1L), suggestedIds("film 1", 10));
+        assertEquals(List.of(10L), suggestedIds("inter", 10));
+        assertEquals(List.of("Interstellar"), filmService.suggest("i", 3).stream()
+                .map(FilmSuggestionDto::getText)
+                .toList());
+        assertTrue(filmService.suggest("!!!", 3).isEmpty());
+        assertTrue(filmService.suggest(" ", 3).isEmpty());
+    }
+
+    /**
+     * Тест проверяет, что индекс существования отвечает по загруженным id, учитывает создание и удаление,
+     * а отсутствие id в индексе перепроверяется в БД
+     */
+    @Test
+    void shouldCheckExistenceWithIndex() {
+        existenceIndex.load();
+
+        assertTrue(existenceIndex.isReady());
+        assertTrue(existenceIndex.containsUser(1L));
+        assertTrue(existenceIndex.containsFilm(1L));
+        assertFalse(existenceIndex.containsUser(999L));
+        assertFalse(filmStorage.exists(999L));
+
+        existenceIndex.onFilmDeleted(1L);
+        existenceIndex.onFilmSaved(100_000L);
+        assertFalse(existenceIndex.containsFilm(1L));
+        assertTrue(existenceIndex.containsFilm(100_000L));
+        assertTrue(existenceIndex.containsFilm(2L));
+
+        // Пользователь вставлен в текущей транзакции: в индексе его ещё нет, но проверка находит его в БД
+        jdbc.update("INSERT INTO users (email, name, birthday, login) "
+                + "VALUES ('new@example.com', 'New', '2000-01-01', 'new')");
+        Long newId = jdbc.queryForObject("SELECT MAX(user_id) FROM users", Long.class);
+        assertFalse(existenceIndex.containsUser(newId));
+        assertTrue(userStorage.exists(newId));
+        assertTrue(filmStorage.exists(1L));
+    }
+
+    private List<Long> suggestedIds(String prefix, int limit) {
+        return filmService.suggest(prefix, limit).stream().map(FilmSuggestionDto::getId).toList();
+    }
+
+    private Set<Long> ids(String query, List<String> by) {
+        return filmService.searchFilms(query, by).stream().map(Film::getId).collect(Collectors.toSet());
+    }
+}
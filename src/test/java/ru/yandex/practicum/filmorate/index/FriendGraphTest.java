@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@JdbcTest(properties = "filmorate.friends-graph.compaction-threshold=1000000")
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import(FriendGraph.class)
+@Sql(scripts = {"/cleanup.sql", "/testdata.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class FriendGraphTest {
+    private final FriendGraph graph;
+    private final JdbcTemplate jdbc;
+
+    // Пользователи 1 и 2 дружат с 3, 4 и 5; у 1 строка друга 4 задвоена
+    @BeforeEach
+    void loadGraph() {
+        List<long[]> edges = List.of(new long[]{1, 3}, new long[]{1, 4}, new long[]{1, 4}, new long[]{1, 5},
+                new long[]{2, 3}, new long[]{2, 5}, new long[]{2, 4}, new long[]{3, 1});
+        edges.forEach(edge -> jdbc.update("INSERT INTO friends (user_id, friend_id) VALUES (?, ?)", edge[0], edge[1]));
+        graph.load();
+    }
+
+    /**
+     * Тест проверяет списки друзей и общих друзей из основы, включая дубликаты строк и постраничную выдачу
+     */
+    @Test
+    void shouldReadFriendsAndCommonFriendsFromBase() {
+        assertTrue(graph.isReady());
+        assertArrayEquals(new int[]{3, 4, 5}, graph.friends(1L));
+        assertArrayEquals(new int[]{1}, graph.friends(3L));
+        assertArrayEquals(new int[0], graph.friends(100L));
+        assertArrayEquals(new int[]{3, 4, 5}, graph.commonFriends(1L, 2L, null, null));
+        assertArrayEquals(new int[]{4}, graph.commonFriends(1L, 2L, 3L, 1));
+        assertArrayEquals(new int[]{5}, graph.friends(1L, 4L, 10));
+        assertArrayEquals(new int[0], graph.commonFriends(1L, 3L, null, null));
+    }
+
+    /**
+     * Тест проверяет, что изменения из дельты видны сразу и сохраняются после сжатия,
+     * а изменения, сделанные во время сжатия, не теряются
+     */
+    @Test
+    void shouldApplyDeltaAndKeepItAfterCompaction() {
+        graph.onFriendAdded(1L, 6L);
+        graph.onFriendAdded(2L, 6L);
+        graph.onFriendRemoved(2L, 4L);
+        graph.onFriendAdded(6L, 1L);
+        assertArrayEquals(new int[]{3, 4, 5, 6}, graph.friends(1L));
+        assertArrayEquals(new int[]{3, 5, 6}, graph.commonFriends(1L, 2L, null, null));
+
+        graph.onUserDeleted(5L);
+        assertArrayEquals(new int[]{3, 6}, graph.commonFriends(1L, 2L, null, null));
+        assertArrayEquals(new int[0], graph.friends(5L));
+
+        graph.compact();
+        graph.onFriendRemoved(1L, 6L);
+        graph.onFriendAdded(2L, 4L);
+        assertArrayEquals(new int[]{3, 4}, graph.friends(1L));
+        assertArrayEquals(new int[]{3, 4}, graph.commonFriends(1L, 2L, null, null));
+        assertArrayEquals(new int[]{1}, graph.friends(6L));
+
+        graph.compact();
+        assertArrayEquals(new int[]{3, 4}, graph.commonFriends(1L, 2L, null, null));
+        assertArrayEquals(new int[]{3, 4, 6}, graph.friends(2L));
+        assertTrue(graph.report().contains("дельта 0 записей"));
+        assertTrue(graph.memoryBytes() > 0);
+    }
+
+    /**
+     * Тест проверяет, что сверка строит основу заново из БД: строки, изменённые в обход событий,
+     * появляются и исчезают, а дельта очищается
+     */
+    @Test
+    void shouldReconcileWithDatabase() {
+        jdbc.update("INSERT INTO friends (user_id, friend_id) VALUES (3, 2)");
+        jdbc.update("DELETE FROM friends WHERE user_id = 2 AND friend_id = 5");
+        graph.onFriendAdded(4L, 1L);
+        assertArrayEquals(new int[]{1}, graph.friends(3L));
+        assertArrayEquals(new int[]{1}, graph.friends(4L));
+
+        graph.reconcile();
+        assertArrayEquals(new int[]{1, 2}, graph.friends(3L));
+        assertArrayEquals(new int[]{3, 4}, graph.friends(2L));
+        assertArrayEquals(new int[0], graph.friends(4L));
+        assertTrue(graph.report().contains("дельта 0 записей"));
+    }
+}
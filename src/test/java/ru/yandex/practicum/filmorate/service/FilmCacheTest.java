@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.dal.FeedDbStorage;
+import ru.yandex.practicum.filmorate.dal.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dal.FilmHydrator;
+import ru.yandex.practicum.filmorate.dal.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dal.MpaDbStorage;
+import ru.yandex.practicum.filmorate.dal.StatementCounter;
+import ru.yandex.practicum.filmorate.dal.StatementCountingDataSourceConfig;
+import ru.yandex.practicum.filmorate.dal.UserDbStorage;
+import ru.yandex.practicum.filmorate.dal.mapper.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.FeedRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.MpaRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.UserRowMapper;
+import ru.yandex.practicum.filmorate.dto.DirectorDto;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.UpdateFilmRequest;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.feed.FeedEventPublisher;
+import ru.yandex.practicum.filmorate.index.ExistenceIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest(properties = {"filmorate.leaderboard.enabled=false", "filmorate.likes-index.enabled=false",
+        "filmorate.search-index.enabled=false", "filmorate.suggest.enabled=false",
+        "filmorate.sql.statement-counter.enabled=true"})
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({UserDbStorage.class, FilmDbStorage.class, GenreDbStorage.class, DirectorDbStorage.class, MpaDbStorage.class,
+        UserRowMapper.class, FilmRowMapper.class, FilmHydrator.class, GenreRowMapper.class, MpaRowMapper.class,
+        DirectorRowMapper.class, FilmService.class, DirectorService.class, LikeWriteBuffer.class, FilmCache.class, VersionRegistry.class,
+        RequestCoalescer.class,
+        PopularityLeaderboard.class, LikeIndex.class, ExistenceIndex.class, FriendGraph.class,
+        FilmSearchIndex.class, FilmSuggestIndex.class,
+        ReferenceDataRegistry.class, FeedEventPublisher.class, FeedDbStorage.class, FeedRowMapper.class,
+        StatementCountingDataSourceConfig.class, SimpleMeterRegistry.class})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@Sql(scripts = {"/cleanup.sql", "/testdata.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class FilmCacheTest {
+    private static final long FILM_ID = 1;
+
+    private final FilmService filmService;
+    private final DirectorService directorService;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Тест проверяет, что повторное чтение фильма обходится без запросов к БД, а изменение фильма,
+     * его режиссёра и удаление фильма сбрасывают запись в кэше
+     */
+    @Test
+    void shouldServeFilmFromCacheAndInvalidateOnChanges() {
+        Director director = new Director();
+        director.setName("Director");
+        DirectorDto created = directorService.create(director);
+        filmService.update(updateRequest("Film 1", created.getId()));
+
+        FilmDto first = filmService.getFilm(FILM_ID);
+        StatementCounter.reset();
+        FilmDto cached = filmService.getFilm(FILM_ID);
+        assertEquals(0, StatementCounter.get());
+        assertEquals(first, cached);
+        cached.getDirectors().clear();
+        assertEquals(1, filmService.getFilm(FILM_ID).getDirectors().size());
+
+        director.setId(created.getId());
+        director.setName("Renamed Director");
+        directorService.update(director);
+        assertEquals("Renamed Director", filmService.getFilm(FILM_ID).getDirectors().iterator().next().getName());
+
+        filmService.update(updateRequest("Film 1 updated", created.getId()));
+        assertEquals("Film 1 updated", filmService.getFilm(FILM_ID).getName());
+
+        filmService.deleteFilm(FILM_ID);
+        assertThrows(NotFoundException.class, () -> filmService.getFilm(FILM_ID));
+
+        assertEquals(4, meterRegistry.get("cache.gets").tag("cache", FilmCache.NAME).tag("result", "miss")
+                .functionCounter().count());
+        assertEquals(2, meterRegistry.get("cache.gets").tag("cache", FilmCache.NAME).tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    private UpdateFilmRequest updateRequest(String name, Long directorId) {
+        Director directorRef = new Director();
+        directorRef.setId(directorId);
+        UpdateFilmRequest request = new UpdateFilmRequest();
+        request.setId(FILM_ID);
+        request.setName(name);
+        request.setDescription("Description 1");
+        request.setReleaseDate(LocalDate.of(2023, 1, 15));
+        request.setDuration(120L);
+        request.setMpa(new Mpa(1, null));
+        request.setDirectors(Set.of(directorRef));
+        return request;
+    }
+}
@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.dal.FeedDbStorage;
+import ru.yandex.practicum.filmorate.dal.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dal.FilmHydrator;
+import ru.yandex.practicum.filmorate.dal.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dal.MpaDbStorage;
+import ru.yandex.practicum.filmorate.dal.UserDbStorage;
+import ru.yandex.practicum.filmorate.dal.mapper.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.FeedRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.MpaRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.UserRowMapper;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.feed.FeedEventPublisher;
+import ru.yandex.practicum.filmorate.index.ExistenceIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest(properties = {"filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.flush-interval-ms=3600000",
+        "filmorate.leaderboard.enabled=false", "filmorate.likes-index.enabled=false",
+        "filmorate.search-index.enabled=false", "filmorate.suggest.enabled=false"})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({UserDbStorage.class, FilmDbStorage.class, GenreDbStorage.class, DirectorDbStorage.class, MpaDbStorage.class,
+        UserRowMapper.class, FilmRowMapper.class, FilmHydrator.class, GenreRowMapper.class, MpaRowMapper.class,
+        DirectorRowMapper.class, FilmService.class, DirectorService.class, LikeWriteBuffer.class, FilmCache.class, VersionRegistry.class,
+        RequestCoalescer.class,
+        PopularityLeaderboard.class, LikeIndex.class, ExistenceIndex.class, FriendGraph.class,
+        FilmSearchIndex.class, FilmSuggestIndex.class,
+        ReferenceDataRegistry.class, FeedEventPublisher.class, FeedDbStorage.class, FeedRowMapper.class})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@Sql(scripts = {"/cleanup.sql", "/testdata.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class LikeWriteBufferTest {
+    private static final long FILM_ID = 10;
+
+    private final FilmService filmService;
+    private final LikeWriteBuffer likeBuffer;
+    private final PopularityLeaderboard leaderboard;
+    private final LikeIndex likeIndex;
+    private final JdbcTemplate jdbc;
+
+    /**
+     * Тест проверяет, что действия с лайками копятся в буфере, схлопываются по паре (фильм, пользователь)
+     * и записываются перед чтением популярных фильмов; в ленту, как и без буфера, попадают только действия,
+     * менявшие состояние пары
+     */
+    @Test
+    void shouldCoalesceLikesAndFlushBeforeRead() {
+        filmService.addLike(FILM_ID, 1L);
+        filmService.addLike(FILM_ID, 2L);
+        filmService.addLike(FILM_ID, 2L);
+        filmService.deleteLike(FILM_ID, 1L);
+        filmService.deleteLike(FILM_ID, 3L);
+
+        assertEquals(0, likesCount());
+        assertEquals(List.of(), likedUsers());
+
+        filmService.getPopularFilms(10, null, null);
+
+        assertEquals(1, likesCount());
+        assertEquals(List.of(2L), likedUsers());
+        assertEquals(3, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM feeds WHERE entity_id = ? AND event_type_id = 1", Integer.class, FILM_ID));
+        assertThrows(NotFoundException.class, () -> filmService.addLike(999L, 1L));
+    }
+
+    /**
+     * Тест проверяет, что при остановке буфер сбрасывается, а новые лайки записываются сразу
+     */
+    @Test
+    void shouldDrainOnCloseAndWriteDirectlyAfterwards() {
+        filmService.addLike(FILM_ID, 1L);
+        likeBuffer.close();
+
+        assertEquals(1, likesCount());
+        assertFalse(likeBuffer.isEnabled());
+
+        filmService.addLike(FILM_ID, 2L);
+        assertEquals(2, likesCount());
+    }
+
+    /**
+     * Тест проверяет, что рейтинг учитывает действия из буфера без записи в БД (повторный лайк не считается),
+     * а сброс по пользователю записывает только его действия
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void shouldOverlayPendingLikesAndFlushOnlyOwnStripe() {
+        leaderboard.load();
+        likeIndex.load();
+        for (long userId = 1; userId <= 6; userId++) {
+            filmService.addLike(FILM_ID, userId);
+        }
+        filmService.addLike(11L, 1L);
+        filmService.deleteLike(11L, 2L);
+
+        assertEquals(List.of(FILM_ID, 1L, 2L), filmService.getPopularFilms(3, null, null).stream()
+                .map(FilmDto::getId).toList());
+        assertEquals(0, likesCount());
+
+        likeBuffer.flushUsers(3L);
+        assertEquals(List.of(3L), likedUsers());
+        assertEquals(List.of(FILM_ID, 1L, 2L), filmService.getPopularFilms(3, null, null).stream()
+                .map(FilmDto::getId).toList());
+
+        likeBuffer.flush();
+        assertEquals(6, likesCount());
+        assertEquals(List.of(), likeBuffer.pendingLikes());
+    }
+
+    private int likesCount() {
+        return jdbc.queryForObject("SELECT likes_count FROM films WHERE film_id = ?", Integer.class, FILM_ID);
+    }
+
+    private List<Long> likedUsers() {
+        return jdbc.queryForList("SELECT user_id FROM likes WHERE film_id = ? ORDER BY user_id", Long.class, FILM_ID);
+    }
+}
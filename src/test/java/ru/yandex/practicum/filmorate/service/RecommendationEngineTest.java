@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@JdbcTest(properties = "filmorate.likes-index.enabled=false")
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({LikeIndex.class, RecommendationEngine.class})
+@Sql(scripts = {"/cleanup.sql", "/testdata.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class RecommendationEngineTest {
+    private final LikeIndex likeIndex;
+    private final RecommendationEngine engine;
+
+    @BeforeEach
+    void loadIndex() {
+        likeIndex.load();
+    }
+
+    /**
+     * Пользователь 6 лайкнул только фильм 11, который нравится всем остальным.
+     * Фильмы ранжируются по сумме сходства соседей, равные веса — по id
+     */
+    @Test
+    void shouldRankUnseenFilmsBySimilarityOfNeighbours() {
+        assertEquals(List.of(1L, 2L, 3L, 4L, 6L, 5L, 7L, 9L, 8L), engine.recommend(6L));
+    }
+
+    @Test
+    void shouldFollowLikeUpdates() {
+        assertEquals(List.of(8L), engine.recommend(1L));
+
+        likeIndex.onLike(10L, 6L);
+        likeIndex.onLike(10L, 2L);
+        assertEquals(List.of(8L, 10L), engine.recommend(1L));
+
+        likeIndex.onUnlike(10L, 6L);
+        likeIndex.onUserDeleted(2L);
+        assertEquals(List.of(8L), engine.recommend(1L));
+    }
+
+    @Test
+    void shouldReturnEmptyListForUserWithoutLikes() {
+        assertTrue(engine.recommend(100L).isEmpty());
+    }
+}
@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest(properties = "filmorate.coalescing.endpoints=popular,search")
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({RequestCoalescer.class, VersionRegistry.class, ReferenceDataRegistry.class, SimpleMeterRegistry.class})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class RequestCoalescerTest {
+    private static final int FOLLOWERS = 8;
+
+    private final RequestCoalescer coalescer;
+    private final VersionRegistry versions;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Тест проверяет, что одновременные одинаковые вызовы выполняются один раз и получают общий результат,
+     * а исключение вычисления получают все ожидавшие
+     */
+    @Test
+    void shouldShareOneExecutionBetweenConcurrentCalls() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> result = List.of(1L, 2L);
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i <= FOLLOWERS; i++) {
+                futures.add(executor.submit(() -> coalescer.execute(RequestCoalescer.POPULAR, List.of(10), () -> {
+                    executions.incrementAndGet();
+                    await(release);
+                    return result;
+                })));
+            }
+            awaitCoalesced(RequestCoalescer.POPULAR, FOLLOWERS);
+            release.countDown();
+            for (Future<List<Long>> future : futures) {
+                assertSame(result, future.get());
+            }
+        }
+        assertEquals(1, executions.get());
+        assertEquals(1, count(RequestCoalescer.POPULAR, "executed"));
+
+        CountDownLatch failing = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Object>> failures = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                failures.add(executor.submit(() -> coalescer.execute(RequestCoalescer.SEARCH, List.of("q"), () -> {
+                    await(failing);
+                    throw new NotFoundException("Фильм не найден.");
+                })));
+            }
+            awaitCoalesced(RequestCoalescer.SEARCH, 1);
+            failing.countDown();
+            for (Future<Object> failure : failures) {
+                ExecutionException e = assertThrows(ExecutionException.class, failure::get);
+                assertInstanceOf(NotFoundException.class, e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Тест проверяет, что после изменения эпохи популярности и для отключённого адреса вызов выполняется заново
+     */
+    @Test
+    void shouldNotJoinAfterVersionChangeOrForDisabledEndpoint() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Integer> first = executor.submit(() -> coalescer.execute(RequestCoalescer.POPULAR, List.of(10),
+                    () -> {
+                        executions.incrementAndGet();
+                        await(release);
+                        return 1;
+                    }));
+            while (executions.get() == 0) {
+                Thread.onSpinWait();
+            }
+            versions.onPopularityChanged();
+            assertEquals(2, (int) coalescer.execute(RequestCoalescer.POPULAR, List.of(10), () -> {
+                executions.incrementAndGet();
+                return 2;
+            }));
+            assertEquals(3, (int) coalescer.execute(RequestCoalescer.RECOMMENDATIONS, List.of(1L), () -> 3));
+            release.countDown();
+            assertEquals(1, first.get());
+        }
+        assertEquals(2, executions.get());
+        assertEquals(0, count(RequestCoalescer.POPULAR, "coalesced"));
+    }
+
+    private void awaitCoalesced(String endpoint, int expected) throws InterruptedException {
+        while (count(endpoint, "coalesced") < expected) {
+            Thread.sleep(5);
+        }
+    }
+
+    private double count(String endpoint, String result) {
+        var counter = meterRegistry.find("filmorate.coalescing.requests")
+                .tag("endpoint", endpoint).tag("result", result).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -7,30 +7,52 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.dal.FeedDbStorage;
 import ru.yandex.practicum.filmorate.dal.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dal.FilmHydrator;
+import ru.yandex.practicum.filmorate.dal.GenreDbStorage;
 import ru.yandex.practicum.filmorate.dal.ReviewDbStorage;
 import ru.yandex.practicum.filmorate.dal.UserDbStorage;
+import ru.yandex.practicum.filmorate.dal.mapper.FeedRowMapper;
 import ru.yandex.practicum.filmorate.dal.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.dal.mapper.GenreRowMapper;
 import ru.yandex.practicum.filmorate.dal.mapper.ReviewRowMapper;
 import ru.yandex.practicum.filmorate.dal.mapper.UserRowMapper;
 import ru.yandex.practicum.filmorate.dto.NewReviewDto;
 import ru.yandex.practicum.filmorate.dto.ReviewDto;
 import ru.yandex.practicum.filmorate.dto.UpdateReviewDto;
+import ru.yandex.practicum.filmorate.exception.IdValidationException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.feed.FeedEventPublisher;
+import ru.yandex.practicum.filmorate.index.ExistenceIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FilmSuggestIndex;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.mapper.ReviewMapper;
 
+import java.util.Collection;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @JdbcTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @Import({ReviewService.class, ReviewDto.class, ReviewMapper.class, NewReviewDto.class, UpdateReviewDto.class,
-        ReviewDbStorage.class, ReviewRowMapper.class, UserDbStorage.class, FilmDbStorage.class, UserRowMapper.class, FilmRowMapper.class})
+        ReviewDbStorage.class, ReviewRowMapper.class, UserDbStorage.class, FilmDbStorage.class, UserRowMapper.class, FilmRowMapper.class,
+        FilmHydrator.class, GenreDbStorage.class, GenreRowMapper.class,
+        PopularityLeaderboard.class, LikeIndex.class, ExistenceIndex.class, FriendGraph.class,
+        FilmSearchIndex.class, FilmSuggestIndex.class,
+        ReferenceDataRegistry.class, FeedEventPublisher.class, FeedDbStorage.class, FeedRowMapper.class})
 @Sql(scripts = "/testdata.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
 @Sql(scripts = "/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
 class ReviewDbServiceTest {
 
     private final ReviewService service;
+    private final UserDbStorage userDbStorage;
 
     @Test
     void getReviews() {
@@ -136,6 +158,38 @@ class ReviewDbServiceTest {
         assertThrows(IllegalStateException.class, () -> service.addDislike(1L, 5L));
     }
 
+    /**
+     * Тест проверяет, что смена оценки меняет полезность на 2, а удаление пользователя снимает его оценки
+     */
+    @Test
+    void shouldKeepStoredUsefulInSyncWithVotes() {
+        service.addLike(1L, 4L);
+        assertEquals(3, service.getReview(1L).getUseful());
+        assertThrows(IllegalStateException.class, () -> service.addLike(1L, 4L));
+        assertEquals(3, service.getReview(1L).getUseful());
+        assertThrows(NotFoundException.class, () -> service.addLike(100L, 4L));
+
+        userDbStorage.deleteUser(userDbStorage.getUser(2L).orElseThrow());
+        assertEquals(2, service.getReview(1L).getUseful());
+        assertEquals(0, service.getReview(3L).getUseful());
+        assertEquals(3, service.getReview(5L).getUseful());
+    }
+
+    /**
+     * Тест проверяет постраничную выдачу отзывов по курсору (afterUseful, afterId) в порядке полезности
+     */
+    @Test
+    void shouldPageReviewsByKeyset() {
+        assertEquals(List.of(5L, 2L), ids(service.getReviews(null, null, null, 2)));
+        assertEquals(List.of(1L, 4L), ids(service.getReviews(null, 3, 2L, 2)));
+        assertEquals(List.of(3L), ids(service.getReviews(null, 0, 4L, 2)));
+        assertTrue(service.getReviews(null, -1, 3L, 2).isEmpty());
+
+        assertEquals(List.of(2L), ids(service.getReviews(1L, null, null, 1)));
+        assertEquals(List.of(1L), ids(service.getReviews(1L, 3, 2L, 10)));
+        assertThrows(IdValidationException.class, () -> service.getReviews(null, 3, null, 2));
+    }
+
     @Test
     void shouldUpdateReview() {
         ReviewDto dto = service.getReview(1L);
@@ -150,4 +204,7 @@ class ReviewDbServiceTest {
         assertEquals(updatedReview.getUseful(), dto.getUseful());
     }
 
+    private static List<Long> ids(Collection<ReviewDto> reviews) {
+        return reviews.stream().map(ReviewDto::getReviewId).toList();
+    }
 }
\ No newline at end of file
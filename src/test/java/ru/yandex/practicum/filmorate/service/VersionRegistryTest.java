@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.index.ReferenceDataRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({VersionRegistry.class, ReferenceDataRegistry.class})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class VersionRegistryTest {
+    private final VersionRegistry versions;
+    private final ReferenceDataRegistry referenceData;
+    private final JdbcTemplate jdbc;
+
+    /**
+     * Тест проверяет, что ETag удалённого фильма не совпадает ни с одним из прежних,
+     * а изменение справочника жанров меняет ETag фильмов и популярных
+     */
+    @Test
+    void shouldChangeTagsOnDeleteAndReferenceDataChange() {
+        String unchanged = versions.filmTag(2);
+        String created = versions.filmTag(1);
+        versions.onFilmChanged(1);
+        String changed = versions.filmTag(1);
+        assertNotEquals(created, changed);
+
+        versions.onFilmDeleted(1);
+        assertNotEquals(created, versions.filmTag(1));
+        assertNotEquals(changed, versions.filmTag(1));
+        assertNotEquals(unchanged, versions.filmTag(2));
+
+        String film = versions.filmTag(2);
+        String popular = versions.popularTag();
+        assertEquals(film, versions.filmTag(2));
+        try {
+            jdbc.update("INSERT INTO genre (id, name) VALUES (100, 'Вестерн')");
+            referenceData.refresh();
+            assertNotEquals(film, versions.filmTag(2));
+            assertNotEquals(popular, versions.popularTag());
+        } finally {
+            jdbc.update("DELETE FROM genre WHERE id = 100");
+        }
+    }
+}
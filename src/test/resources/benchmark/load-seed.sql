@@ -0,0 +1,12 @@
+-- Данные для нагрузочного замера VirtualThreadBenchmark: 2000 пользователей по 20 друзей, 2000 фильмов с жанрами и лайками
+INSERT INTO users (email, name, birthday, login)
+    SELECT 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01', 'login' || X FROM SYSTEM_RANGE(1, 2000);
+INSERT INTO films (title, description, release_date, duration, mpa_id)
+    SELECT 'film ' || X, 'description ' || X, DATEADD(DAY, X, DATE '1990-01-01'), 90 + MOD(X, 60), MOD(X, 5) + 1
+    FROM SYSTEM_RANGE(1, 2000);
+INSERT INTO film_genre (film_id, genre_id) SELECT X, MOD(X, 6) + 1 FROM SYSTEM_RANGE(1, 2000);
+INSERT INTO friends (user_id, friend_id)
+    SELECT u.X, MOD(u.X + f.X * 97, 2000) + 1 FROM SYSTEM_RANGE(1, 2000) u, SYSTEM_RANGE(1, 20) f;
+INSERT INTO likes (film_id, user_id)
+    SELECT DISTINCT MOD(u.X * 7 + l.X * l.X, 2000) + 1, u.X FROM SYSTEM_RANGE(1, 2000) u, SYSTEM_RANGE(1, 15) l;
+UPDATE films f SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id);
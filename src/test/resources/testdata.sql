@@ -86,21 +86,25 @@ INSERT INTO reviews (user_id, film_id, positive, content) VALUES
                                                               (1, 3, true, 'Легкий и приятный фильм для вечернего просмотра. Хороший юмор и теплая атмосфера.'),
                                                               (4, 2, false, 'Слишком затянуто. Интересные моменты тонут в море ненужных диалогов.');
 
-INSERT INTO review_likes (review_id, user_id) VALUES (1, 2),
-                                                     (1, 3),
+INSERT INTO review_votes (review_id, user_id, vote) VALUES (1, 2, 1),
+                                                           (1, 3, 1),
+                                                           (1, 4, -1),--рейтинг 1
 
-                                                     (2, 1),
-                                                     (2, 3),
-                                                     (2, 4),
+                                                           (2, 1, 1),
+                                                           (2, 3, 1),
+                                                           (2, 4, 1),
 
-                                                     (3, 1),
+                                                           (3, 1, 1),
+                                                           (3, 2, -1),
+                                                           (3, 5, -1),
 
-                                                     (5, 1),
-                                                     (5, 2),
-                                                     (5, 3),
-                                                     (5, 5);
+                                                           (5, 1, 1),
+                                                           (5, 2, 1),
+                                                           (5, 3, 1),
+                                                           (5, 5, 1);
 
-INSERT INTO review_dislikes (review_id, user_id) VALUES (1, 4),--рейтинг 1
-                                                        (3, 2),
-                                                        (3, 5);
+-- оценки вставлены напрямую, минуя addLike, поэтому полезность заполняем вручную
+UPDATE reviews r SET useful = (SELECT COALESCE(SUM(v.vote), 0) FROM review_votes v WHERE v.review_id = r.id);
 
+-- лайки вставлены напрямую, минуя addLike, поэтому счётчик заполняем вручную
+UPDATE films f SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id);